@@ -0,0 +1,241 @@
+package player;
+
+import mnkgame.MNKGameState;
+import player.TranspositionSearchMoveStrategy.TranspositionData;
+
+/**
+ * Transposition table implemented as a hash table of buckets, so the storage implementation only has to provide
+ * the access to the slots, while this class implements the packing of a transposition into a slot and the replacement policy.
+ * The slots count is the greatest power of 2 that fits the provided size, and the bucket of a key is <code>key & mask</code>.
+ * Each bucket has 2 slots with different replacement policies:
+ * <ul>
+ *      <li>the depth-preferred slot keeps the deepest searched transposition, and is replaced only by a deeper
+ *      or equal search, where the depth of a transposition stored by an older search (see {@link #newSearch()})
+ *      is reduced by {@link #AGE_DEPTH_PENALTY} for each search since then</li>
+ *      <li>the always-replace slot keeps the newest transposition that doesn't fit the depth-preferred slot,
+ *      and the transposition of the current search just moved out of the depth-preferred slot</li>
+ * </ul>
+ * So deep results survive across moves until newer searches require their slots, without flushing whole tables.
+ *
+ * Each slot packs:
+ * <ul>
+ *      <li>key: the zobrist key</li>
+ *      <li>verification key: the zobrist verification key, if used</li>
+ *      <li>value: eval (32 bit) | searched depth (16 bit) | {@link TranspositionData.ValueType} (2 bit) | {@link MNKGameState} (2 bit) | generation (8 bit) | used flag (1 bit)</li>
+ *      <li>move: best move index + 1 (16 bit) | outcome depth (16 bit)</li>
+ * </ul>
+ * So boards up to 65535 cells are supported.
+ */
+public abstract class AbstractTranspositionTable implements TranspositionTable {
+
+    public static final int BUCKET_SIZE = 2;
+    /**
+     * Plies of searched depth lost by a transposition on each search started after its store:
+     * the game advances by 2 plies between two searches of the same player
+     */
+    public static final int AGE_DEPTH_PENALTY = 2;
+
+    protected static final int DEPTH_SHIFT = 32;
+    protected static final int TYPE_SHIFT = 48;
+    protected static final int STATE_SHIFT = 50;
+    protected static final int GENERATION_SHIFT = 52;
+    protected static final long USED_FLAG = 1L << 63;
+    protected static final long DEPTH_MASK = 0xFFFF;
+    protected static final long TYPE_MASK = 0x3;
+    protected static final long STATE_MASK = 0x3;
+    protected static final long GENERATION_MASK = 0xFF;
+    protected static final int MOVE_MASK = 0xFFFF;
+
+    protected static final TranspositionData.ValueType[] TYPES = TranspositionData.ValueType.values();
+    protected static final MNKGameState[] STATES = MNKGameState.values();
+
+    protected final int capacity;
+    protected final int mask;
+    protected final boolean useVerificationKey;
+    protected int generation;
+    protected long usedSlots;
+    protected TranspositionTableStats stats;
+
+    /**
+     * @param sizeInBytes max memory in bytes used by the table
+     * @param slotSize memory in bytes used by each slot
+     * @param maxCapacity max slots count supported by the storage
+     * @param useVerificationKey if true then also stores and checks the verification key of {@link ZobristHashableBoardState}
+     */
+    protected AbstractTranspositionTable(long sizeInBytes, int slotSize, long maxCapacity, boolean useVerificationKey) {
+        long slotsCount = sizeInBytes / slotSize;
+        capacity = (int) Long.highestOneBit(Math.min(Math.max(BUCKET_SIZE, slotsCount), maxCapacity));
+        mask = (capacity / BUCKET_SIZE) - 1;
+        this.useVerificationKey = useVerificationKey;
+        generation = 0;
+        usedSlots = 0;
+    }
+
+    protected abstract long getKeyAt(int slot);
+
+    protected abstract long getVerificationKeyAt(int slot);
+
+    protected abstract long getValueAt(int slot);
+
+    protected abstract int getMoveAt(int slot);
+
+    protected abstract void setSlot(int slot, long key, long verificationKey, long value, int move);
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(1)</code></li>
+     * </ul>
+     */
+    @Override
+    public void newSearch() {
+        generation = (generation + 1) & (int) GENERATION_MASK;
+    }
+
+    @Override
+    public int getGeneration() {
+        return generation;
+    }
+
+    @Override
+    public long usedSlots() {
+        return usedSlots;
+    }
+
+    @Override
+    public void setStats(TranspositionTableStats stats) {
+        this.stats = stats;
+    }
+
+    protected boolean isUsed(int slot) {
+        return (getValueAt(slot) & USED_FLAG) != 0;
+    }
+
+    protected boolean isStale(int slot) {
+        return getAge(getValueAt(slot), generation) != 0;
+    }
+
+    /**
+     * @param value the value of a used slot
+     * @param generation the current generation
+     * @return the count of searches started after the store of the slot, modulo the generations count
+     */
+    protected static int getAge(long value, int generation) {
+        return (generation - (int) ((value >>> GENERATION_SHIFT) & GENERATION_MASK)) & (int) GENERATION_MASK;
+    }
+
+    /**
+     * @param value the value of the used depth-preferred slot
+     * @param generation the current generation
+     * @param depthLeft the searched depth of the new transposition
+     * @return true if the new transposition is as deep as the one of the slot, reduced by its age
+     */
+    protected static boolean isDepthReplaceable(long value, int generation, int depthLeft) {
+        int depth = (int) ((value >>> DEPTH_SHIFT) & DEPTH_MASK);
+        return depthLeft >= depth - AGE_DEPTH_PENALTY * getAge(value, generation);
+    }
+
+    protected boolean matches(int slot, long key, long verificationKey) {
+        return isUsed(slot) && getKeyAt(slot) == key && (!useVerificationKey || getVerificationKeyAt(slot) == verificationKey);
+    }
+
+    /**
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O({@link #BUCKET_SIZE}) = O(1)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    @Override
+    public int probe(long key, long verificationKey) {
+        int depthSlot = ((int) key & mask) * BUCKET_SIZE;
+        if( matches(depthSlot, key, verificationKey) )
+            return depthSlot;
+        else if( matches(depthSlot + 1, key, verificationKey) )
+            return depthSlot + 1;
+
+        if( stats != null && useVerificationKey
+            && ((isUsed(depthSlot) && getKeyAt(depthSlot) == key) || (isUsed(depthSlot + 1) && getKeyAt(depthSlot + 1) == key)) ) {
+            stats.count(TranspositionTableStats.COLLISIONS);
+        }
+        return -1;
+    }
+
+    /**
+     * Write the slot, counting the used slots and the overwrites
+     */
+    protected void replaceSlot(int slot, long key, long verificationKey, long value, int move) {
+        if( !isUsed(slot) )
+            usedSlots++;
+        else if( stats != null && (getKeyAt(slot) != key || getVerificationKeyAt(slot) != verificationKey) )
+            stats.count(TranspositionTableStats.OVERWRITES);
+        setSlot(slot, key, verificationKey, value, move);
+    }
+
+    /**
+     * Store the transposition in the depth-preferred slot of its bucket if the slot is free,
+     * or stores a shallower or equal search once reduced by its age (moving the replaced transposition to the always-replace slot
+     * if it has been stored by the current search, otherwise dropping it), else store it in the always-replace slot
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O({@link #BUCKET_SIZE}) = O(1)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    @Override
+    public void store(long key, long verificationKey, int eval, int depthLeft, TranspositionData.ValueType type, MNKGameState state, int moveIndex, int outcomeDepth) {
+        int depthSlot = ((int) key & mask) * BUCKET_SIZE;
+        int alwaysSlot = depthSlot + 1;
+        long value = (eval & 0xFFFFFFFFL)
+                | ((depthLeft & DEPTH_MASK) << DEPTH_SHIFT)
+                | (((long) type.ordinal()) << TYPE_SHIFT)
+                | (((long) state.ordinal()) << STATE_SHIFT)
+                | (((long) generation) << GENERATION_SHIFT)
+                | USED_FLAG;
+        int move = ((moveIndex + 1) & MOVE_MASK) | ((outcomeDepth & MOVE_MASK) << 16);
+        if( stats != null )
+            stats.count(TranspositionTableStats.STORES);
+
+        if( !isUsed(depthSlot) || isDepthReplaceable(getValueAt(depthSlot), generation, depthLeft) ) {
+            // keep the replaced transposition, unless it's the same state or it's stale, as it would evict a newer one
+            if( isUsed(depthSlot) && !isStale(depthSlot) && !matches(depthSlot, key, verificationKey) )
+                replaceSlot(alwaysSlot, getKeyAt(depthSlot), getVerificationKeyAt(depthSlot), getValueAt(depthSlot), getMoveAt(depthSlot));
+            replaceSlot(depthSlot, key, verificationKey, value, move);
+        }
+        else {
+            replaceSlot(alwaysSlot, key, verificationKey, value, move);
+        }
+    }
+
+    @Override
+    public int getEval(int slot) {
+        return (int) getValueAt(slot);
+    }
+
+    @Override
+    public int getDepth(int slot) {
+        return (int) ((getValueAt(slot) >>> DEPTH_SHIFT) & DEPTH_MASK);
+    }
+
+    @Override
+    public TranspositionData.ValueType getType(int slot) {
+        return TYPES[(int) ((getValueAt(slot) >>> TYPE_SHIFT) & TYPE_MASK)];
+    }
+
+    @Override
+    public MNKGameState getState(int slot) {
+        return STATES[(int) ((getValueAt(slot) >>> STATE_SHIFT) & STATE_MASK)];
+    }
+
+    @Override
+    public int getMove(int slot) {
+        return (getMoveAt(slot) & MOVE_MASK) - 1;
+    }
+
+    @Override
+    public int getOutcomeDepth(int slot) {
+        return getMoveAt(slot) >>> 16;
+    }
+}
@@ -9,6 +9,14 @@ public class AlphaBetaOutcome implements Comparable<AlphaBetaOutcome> {
     public MNKCell move;
     public MNKGameState state;
 
+    /**
+     * Sentinel packed score of a node without a valid score: a node that hasn't searched any move yet,
+     * or a node interrupted while the search is rewinding to the root, see {@link AlphaBetaPruningSearchMoveStrategy#isRewinding()}.
+     * It's out of the range of {@link #pack}, so it's never a real score
+     */
+    public static final long NO_SCORE = Long.MIN_VALUE;
+    private static final MNKGameState[] STATES = MNKGameState.values();
+
     public int getWeightedValue() {
         return eval / (Math.max(1, depth));
     }
@@ -24,6 +32,48 @@ public class AlphaBetaOutcome implements Comparable<AlphaBetaOutcome> {
         state = MNKGameState.OPEN;
     }
 
+    /**
+     * @param score a packed score, see {@link #pack}
+     * @param move the move of the outcome, or null
+     */
+    public AlphaBetaOutcome(long score, MNKCell move) {
+        this.eval = getEval(score);
+        this.depth = getDepth(score);
+        this.state = getState(score);
+        this.move = move;
+    }
+
+    /**
+     * Pack an outcome without its move in a long, as returned by the search core so its nodes don't allocate outcomes:
+     * the eval in the high 32 bits, the depth in the next 24 bits, and the ordinal of the state in the low 8 bits
+     * @param eval the eval of the outcome, in <code>[-WIN_SCORE, WIN_SCORE]</code> (see {@link AlphaBetaPruningSearchMoveStrategy#WIN_SCORE})
+     * @param depth the depth of the outcome, in <code>[0, 2^24)</code>
+     * @param state the state of the outcome
+     * @return the packed score of the outcome, that is never {@link #NO_SCORE} for an eval in the range above
+     */
+    public static long pack(int eval, int depth, MNKGameState state) {
+        return ((long) eval << 32) | ((long) (depth & 0xFFFFFF) << 8) | state.ordinal();
+    }
+
+    /**
+     * @return the packed score of this outcome, see {@link #pack}
+     */
+    public long toScore() {
+        return pack(eval, depth, state);
+    }
+
+    public static int getEval(long score) {
+        return (int) (score >> 32);
+    }
+
+    public static int getDepth(long score) {
+        return (int) (score >>> 8) & 0xFFFFFF;
+    }
+
+    public static MNKGameState getState(long score) {
+        return STATES[(int) score & 0xFF];
+    }
+
     @Override
     public int compareTo(AlphaBetaOutcome o) {
         return o == null ? 1 : Integer.compare(eval, o.eval);
@@ -44,6 +94,19 @@ public class AlphaBetaOutcome implements Comparable<AlphaBetaOutcome> {
             return o1;
     }
 
+    /**
+     * Same as {@link #max(AlphaBetaOutcome, AlphaBetaOutcome)} on packed scores
+     */
+    public static long max(long s1, long s2) {
+        int e1 = getEval(s1), e2 = getEval(s2);
+        if( e1 < e2 )
+            return s2;
+        else if( e1 > e2 )
+            return s1;
+        else
+            return getDepth(s1) <= getDepth(s2) ? s1 : s2;
+    }
+
     public static AlphaBetaOutcome min(AlphaBetaOutcome o1, AlphaBetaOutcome o2) {
         int compare = o1.compareTo(o2);
 
@@ -59,6 +122,19 @@ public class AlphaBetaOutcome implements Comparable<AlphaBetaOutcome> {
             return o1;
     }
 
+    /**
+     * Same as {@link #min(AlphaBetaOutcome, AlphaBetaOutcome)} on packed scores
+     */
+    public static long min(long s1, long s2) {
+        int e1 = getEval(s1), e2 = getEval(s2);
+        if( e1 < e2 )
+            return s1;
+        else if( e1 > e2 )
+            return s2;
+        else
+            return getDepth(s1) <= getDepth(s2) ? s1 : s2;
+    }
+
     @Override
     public String toString() {
         return "AlphaBetaOutcome{" +
@@ -22,6 +22,12 @@ public class AlphaBetaPruningSearchMoveStrategy implements SearchMoveStrategy<MN
     protected MNKCellState MY_MARK_STATE;
     protected MNKCellState ENEMY_MARK_STATE;
     public EnumMap<MNKGameState, Integer> STANDARD_SCORES;
+    /**
+     * Score of a win, finite so the search windows can be moved and widened without overflows.
+     * The heuristic evaluations must stay in <code>(-WIN_SCORE, WIN_SCORE)</code>
+     */
+    public static final int WIN_SCORE = 1 << 30;
+    public static final int LOSE_SCORE = -WIN_SCORE;
     protected int playerIndex;
 
     protected int maxDepthSearch;
@@ -34,6 +40,8 @@ public class AlphaBetaPruningSearchMoveStrategy implements SearchMoveStrategy<MN
     protected long realEndTime;
     protected long startingExitTime;
     protected boolean isEarlyExitStarted;
+    // count of the nodes searched by alphaBetaPruning on this strategy
+    protected long nodesCount;
 
     // stats
     protected float wTotalWorkTime;
@@ -47,13 +55,33 @@ public class AlphaBetaPruningSearchMoveStrategy implements SearchMoveStrategy<MN
 
     protected EBoard currentBoard;
     protected AlphaBetaOutcome lastResult;
+    // cells indexed by their array coordinate i * N + j, so the moves stored as coordinates are restored without allocations
+    protected MNKCell[] cellsByIndex;
     /**
-     * Used to rewind on a fast way (tricky) the recursive function of {@link #alphaBetaPruning(boolean, int, int, int, int, long)} through Exception when timeout has been reached.
-     * this should be set to true only if its return value isn't needed, and the internal data structure supports a restore behavior
-     * as the board and other data are in invalid state
+     * Array coordinate of no move
+     */
+    public static final int NO_MOVE = -1;
+    // triangular table of the principal variation: the row of each ply holds the array coordinates of the best line found from the node at that ply,
+    // from that ply up to principalVariationEnd[ply] excluded, see #updatePrincipalVariation
+    protected int[] principalVariation;
+    protected int[] principalVariationEnd;
+    protected int principalVariationPlies;
+    /**
+     * Used to rewind on a fast way the recursive function of {@link #alphaBetaPruning(boolean, int, int, int, int, long)} when timeout has been reached:
+     * each node unmarks its move and returns at once without a valid score, so the board is left in the root state, see {@link #isRewinding()}.
+     * this should be set to true only if the return value of an interrupted search isn't needed
      */
     public boolean USE_FAST_REWIND = false;
 
+    /**
+     * If true and a {@link SolvedPositionDatabase} of the configuration is found in {@link #SOLVED_POSITIONS_DIRECTORY},
+     * then the positions are answered by the database instead of being searched
+     */
+    public boolean USE_SOLVED_POSITIONS = true;
+    public String SOLVED_POSITIONS_DIRECTORY = SolvedPositionDatabase.DEFAULT_DIRECTORY;
+    protected SolvedPositionDatabase solvedPositions;
+    private final int[] solvedEntryBuffer = new int[1];
+
     // DEBUG
     public static final boolean DEBUG_SHOW_INFO = Debug.Player.DEBUG_SHOW_INFO;
     public static final boolean DEBUG_SHOW_BOARD = Debug.Player.DEBUG_SHOW_BOARD;
@@ -95,14 +123,25 @@ public class AlphaBetaPruningSearchMoveStrategy implements SearchMoveStrategy<MN
             ENEMY_MARK_STATE = MNKCellState.P1;
         }
         STANDARD_SCORES = new EnumMap<>(MNKGameState.class);
-        STANDARD_SCORES.put(STATE_WIN, Integer.MAX_VALUE);
-        STANDARD_SCORES.put(STATE_LOSE, Integer.MIN_VALUE);
+        STANDARD_SCORES.put(STATE_WIN, WIN_SCORE);
+        STANDARD_SCORES.put(STATE_LOSE, LOSE_SCORE);
         STANDARD_SCORES.put(MNKGameState.DRAW, 0);
         STANDARD_SCORES.put(MNKGameState.OPEN, 0);
 
         timeout = timeout_in_secs * 1000L;
         playerIndex = first ? 0 : 1;
 
+        cellsByIndex = new MNKCell[M * N];
+        for (int i = 0; i < M; i++) {
+            for (int j = 0; j < N; j++) {
+                cellsByIndex[i * N + j] = new MNKCell(i, j);
+            }
+        }
+        principalVariationPlies = 0;
+        principalVariation = new int[0];
+        principalVariationEnd = new int[0];
+        growPrincipalVariation(Math.min(M * N + 1, 32));
+
         // round index
         round = 0;
 
@@ -116,8 +155,12 @@ public class AlphaBetaPruningSearchMoveStrategy implements SearchMoveStrategy<MN
         maxWorkTime = 0;
         startingExitTime = 0;
         isEarlyExitStarted = false;
+        nodesCount = 0;
         maxDepthSearch = 6;
 
+        solvedPositions = USE_SOLVED_POSITIONS ? SolvedPositionDatabase.load(SOLVED_POSITIONS_DIRECTORY, M, N, K) : null;
+        if( DEBUG_SHOW_INFO && solvedPositions != null )
+            Debug.println("Loaded solved positions database of " + solvedPositions.size() + " positions");
     }
 
     /**
@@ -177,7 +220,7 @@ public class AlphaBetaPruningSearchMoveStrategy implements SearchMoveStrategy<MN
     @Override
     public MNKCell search() {
 
-        lastResult = alphaBetaPruning(
+        long score = alphaBetaPruning(
                 true,
                 STANDARD_SCORES.get(STATE_LOSE),
                 STANDARD_SCORES.get(STATE_WIN),
@@ -185,6 +228,7 @@ public class AlphaBetaPruningSearchMoveStrategy implements SearchMoveStrategy<MN
                 maxDepthSearch,
                 expectedEndTime
         );
+        lastResult = new AlphaBetaOutcome(score, getPrincipalVariationMove(0));
         endTime = System.currentTimeMillis();
 
         return lastResult.move;
@@ -257,18 +301,17 @@ public class AlphaBetaPruningSearchMoveStrategy implements SearchMoveStrategy<MN
     }
 
     /**
-     * Evaluate the board state and return an outcome
+     * Evaluate the board state and return its score
      * @implNote Cost <ul>
      *      <li>Time: <code>O(1)</code></li>
      *      <li>Space: <code>O(1)</code></li>
      * </ul>
      * @param depth
      * @param isMyTurn
-     * @return
+     * @return the packed score of the board state, see {@link AlphaBetaOutcome#pack}
      */
-    protected AlphaBetaOutcome evaluate(int depth, boolean isMyTurn) {
+    protected long evaluate(int depth, boolean isMyTurn) {
         MNKGameState gameState = currentBoard.gameState();
-        AlphaBetaOutcome outcome = new AlphaBetaOutcome();
         depth = getSimulatedRound();
 
         int score = STANDARD_SCORES.get(gameState);
@@ -279,10 +322,7 @@ public class AlphaBetaPruningSearchMoveStrategy implements SearchMoveStrategy<MN
             // score = score / Math.max(1, depth);
         }
 
-        outcome.eval = score;
-        outcome.depth = depth;
-        outcome.state = gameState;
-        return outcome;
+        return AlphaBetaOutcome.pack(score, depth, gameState);
     }
 
     /**
@@ -305,20 +345,34 @@ public class AlphaBetaPruningSearchMoveStrategy implements SearchMoveStrategy<MN
      * @param depth current depth level
      * @param depthLeft max depth to reach
      * @param endTime max time that the algorithm should run up to
-     * @throws EarlyExitException if {@link #USE_FAST_REWIND} is true and current run time is greater than endTime
      * @see {@link #USE_FAST_REWIND}
-     * @PostCondition if {@link EarlyExitException} has been triggered, the data structure below are in invalid state
-     * @return
+     * @PostCondition the board is in the same state it was before the call, even if the search has been interrupted
+     * @PostCondition if {@link #isRewinding()}, the returned score isn't valid
+     * @PostCondition the principal variation of the node is stored at the row of depth, see {@link #getPrincipalVariationMove}
+     * @return the packed score of the node, see {@link AlphaBetaOutcome#pack}
      */
-    protected AlphaBetaOutcome alphaBetaPruning(boolean shouldMaximize, int a, int b, int depth, int depthLeft, long endTime) {
+    protected long alphaBetaPruning(boolean shouldMaximize, int a, int b, int depth, int depthLeft, long endTime) {
+        nodesCount++;
+        clearPrincipalVariation(depth);
+        if( solvedPositions != null && currentBoard.gameState() == MNKGameState.OPEN ) {
+            // the move is required only by the root, the other nodes just need the value
+            long solved = depth == 0 ? searchSolvedMove(depth) : evaluateSolvedPosition();
+            if( solved != AlphaBetaOutcome.NO_SCORE )
+                return solved;
+        }
+
         // on last if condition may would be a match in a always win/lost configuration
-        if (depthLeft == 0 || currentBoard.gameState() != MNKGameState.OPEN) {
+        if (currentBoard.gameState() != MNKGameState.OPEN) {
             return evaluate(depth, shouldMaximize);
         }
+        else if (depthLeft == 0) {
+            return evaluateHorizon(shouldMaximize, a, b, depth, endTime);
+        }
         else {
-            AlphaBetaOutcome
-                    bestOutcome = null,
-                    outcome = null;
+            long
+                    bestScore = AlphaBetaOutcome.NO_SCORE,
+                    score;
+            int moveIndex = 0;
 
             for ( MNKCell move : getMovesCandidates()) {
                 // estimate 1ms per depth (Upperbound) required to exit
@@ -329,39 +383,43 @@ public class AlphaBetaPruningSearchMoveStrategy implements SearchMoveStrategy<MN
                     if( DEBUG_SHOW_INFO )
                         Debug.println(Utils.ConsoleColors.YELLOW + "Exiting quickly - depth " + depth + Utils.ConsoleColors.RESET);
                     // This is required here because if USE_FAST_REWIND, then we don't have to provide a return value
-                    // NOTE: this behavior can be obtained converting this recursive function to an iterative one
-                    // but in this way is more readable for documentation purpose
-                    throw new EarlyExitException("Exiting quickly");
+                    // so the nodes above just unmark their moves on the way back to the root
+                    return AlphaBetaOutcome.NO_SCORE;
                 }
 
                 mark(move);
 
-                outcome = alphaBetaPruning(!shouldMaximize, a, b, depth + 1, depthLeft - 1, endTime);
-                outcome.move = move;
+                score = searchChild(shouldMaximize, a, b, depth, depthLeft, endTime, moveIndex++);
 
                 unMark();
 
+                if( isRewinding() )
+                    return AlphaBetaOutcome.NO_SCORE;
+
+                long previousBestScore = bestScore;
                 // minimize
                 if (!shouldMaximize) {
-                    bestOutcome = bestOutcome != null ? min(bestOutcome, outcome) : outcome;
-                    b = Math.min(b, outcome.eval);
-                    if( USE_FAST_REWIND && depth == 0 ) lastResult = new AlphaBetaOutcome(bestOutcome);
+                    bestScore = bestScore != AlphaBetaOutcome.NO_SCORE ? min(bestScore, score) : score;
+                    b = Math.min(b, AlphaBetaOutcome.getEval(score));
                 }
                 // maximize
                 else {
-                    bestOutcome = bestOutcome != null ? max(bestOutcome, outcome) : outcome;
-                    a = Math.max(a, outcome.eval);
-                    if( USE_FAST_REWIND && depth == 0 ) lastResult = new AlphaBetaOutcome(bestOutcome);
+                    bestScore = bestScore != AlphaBetaOutcome.NO_SCORE ? max(bestScore, score) : score;
+                    a = Math.max(a, AlphaBetaOutcome.getEval(score));
                 }
 
-                if( DEBUG_SHOW_MOVES_RESULT_ON_ROOT && depth == 0 )
-                    Debug.println("Move " + move + " bring to " + outcome + " - best: " + bestOutcome );
+                // if first run or just override best score, then replace the principal variation
+                if( bestScore != previousBestScore ) {
+                    updatePrincipalVariation(depth, move.i * currentBoard.N + move.j);
+                    if( USE_FAST_REWIND && depth == 0 ) lastResult = new AlphaBetaOutcome(bestScore, move);
+                }
 
-                // if first run or just override best outcome, then replace move
-                if( bestOutcome.move == outcome.move || bestOutcome.move == null)
-                    bestOutcome.move = move;
+                if( DEBUG_SHOW_MOVES_RESULT_ON_ROOT && depth == 0 )
+                    Debug.println("Move " + move + " bring to " + new AlphaBetaOutcome(score, move)
+                            + " - best: " + new AlphaBetaOutcome(bestScore, getPrincipalVariationMove(depth)) );
 
                 if (b <= a) { // a or b cutoff ( can't get better results )
+                    onCutoff(move, depth, depthLeft);
                     break;
                 }
 
@@ -369,15 +427,146 @@ public class AlphaBetaPruningSearchMoveStrategy implements SearchMoveStrategy<MN
                     if(!isEarlyExitStarted) {
                         isEarlyExitStarted = true; startingExitTime = System.currentTimeMillis();
                     }
-                    // This is required here because if !USE_FAST_REWIND, then we can provide a valid best outcome
+                    // This is required here because if !USE_FAST_REWIND, then we can provide a valid best score
                     if( DEBUG_SHOW_INFO )
                         Debug.println(Utils.ConsoleColors.YELLOW + "Exiting quickly - depth " + depth  + Utils.ConsoleColors.RESET);
                     break;
                 }
 
             }
-            return bestOutcome;
+            return bestScore;
+        }
+    }
+
+    /**
+     * @return the count of the nodes searched by this strategy since {@link #init}
+     */
+    protected long getNodesCount() {
+        return nodesCount;
+    }
+
+    /**
+     * @return true if the running search is rewinding to the root because it ran out of time with {@link #USE_FAST_REWIND}:
+     * the scores returned by the nodes aren't valid, so they must be neither used nor stored
+     */
+    protected boolean isRewinding() {
+        return USE_FAST_REWIND && isEarlyExitStarted;
+    }
+
+    /**
+     * Evaluate the current position through the {@link SolvedPositionDatabase}
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(M*N)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     * @return the packed score of perfect play from the current position, or {@link AlphaBetaOutcome#NO_SCORE} if it isn't in the database
+     */
+    protected long evaluateSolvedPosition() {
+        int entry = solvedPositions.getEntry(currentBoard);
+        return toSolvedScore(
+                SolvedPositionDatabase.getResult(entry),
+                SolvedPositionDatabase.getDistance(entry),
+                currentBoard.currentPlayer()
+        );
+    }
+
+    /**
+     * Search the best move of the current position through the {@link SolvedPositionDatabase}, and store it as principal variation of the node
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O( (M*N)^2 )</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     * @param depth depth level of the node
+     * @return the packed score of the best move with perfect play, or {@link AlphaBetaOutcome#NO_SCORE} if it isn't in the database
+     */
+    protected long searchSolvedMove(int depth) {
+        MNKCell move = solvedPositions.getBestMove(currentBoard, solvedEntryBuffer);
+        if( move == null )
+            return AlphaBetaOutcome.NO_SCORE;
+        int entry = solvedEntryBuffer[0];
+        // the entry is relative to the opponent, after the move
+        long score = toSolvedScore(
+                SolvedPositionDatabase.getResult(entry),
+                SolvedPositionDatabase.getDistance(entry) + 1,
+                1 - currentBoard.currentPlayer()
+        );
+        if( score != AlphaBetaOutcome.NO_SCORE )
+            setPrincipalVariation(depth, move.i * currentBoard.N + move.j);
+        return score;
+    }
+
+    /**
+     * @param result result of {@link SolvedPositionDatabase} relative to the player to move in the position reached at the current round
+     * @param distance moves left to the end of the game from the current round
+     * @param playerToMove index of the player the result is relative to
+     * @return the packed score that {@link #evaluate(int, boolean)} would return at the end of the game,
+     * or {@link AlphaBetaOutcome#NO_SCORE} if the result is {@link SolvedPositionDatabase#UNKNOWN}
+     */
+    protected long toSolvedScore(int result, int distance, int playerToMove) {
+        if( result == SolvedPositionDatabase.UNKNOWN )
+            return AlphaBetaOutcome.NO_SCORE;
+
+        MNKGameState state;
+        int depth = getSimulatedRound() + (result == SolvedPositionDatabase.DRAW ? currentBoard.getFreeCellsCount() : distance);
+        if( result == SolvedPositionDatabase.DRAW ) {
+            state = MNKGameState.DRAW;
         }
+        else {
+            boolean isWinOfPlayerToMove = result == SolvedPositionDatabase.WIN;
+            state = isWinOfPlayerToMove == (playerToMove == playerIndex) ? STATE_WIN : STATE_LOSE;
+        }
+
+        int score = STANDARD_SCORES.get(state);
+        if( score >= depth)
+            score -= depth-1;
+        else if( score <= -depth)
+            score += depth-1;
+        return AlphaBetaOutcome.pack(score, depth, state);
+    }
+
+    /**
+     * @return the outcome of {@link #toSolvedScore}, without move, or null if the result is {@link SolvedPositionDatabase#UNKNOWN}
+     */
+    protected AlphaBetaOutcome toSolvedOutcome(int result, int distance, int playerToMove) {
+        long score = toSolvedScore(result, distance, playerToMove);
+        return score != AlphaBetaOutcome.NO_SCORE ? new AlphaBetaOutcome(score, null) : null;
+    }
+
+    /**
+     * Evaluate an open node at the depth horizon, called by {@link #alphaBetaPruning} when there's no depth left
+     * @param shouldMaximize if true then will compute best move for this player else for enemy player
+     * @param a best score for this player
+     * @param b best score for simulated enemy
+     * @param depth current depth level
+     * @param endTime max time that the algorithm should run up to
+     * @return the packed score of {@link #evaluate(int, boolean)}
+     */
+    protected long evaluateHorizon(boolean shouldMaximize, int a, int b, int depth, long endTime) {
+        return evaluate(depth, shouldMaximize);
+    }
+
+    /**
+     * Search the child node reached by the last marked move, in the loop of {@link #alphaBetaPruning}
+     * @param shouldMaximize if true then the parent node computes the best move for this player else for enemy player
+     * @param a best score for this player, at the parent node
+     * @param b best score for simulated enemy, at the parent node
+     * @param depth depth level of the parent node
+     * @param depthLeft max depth to reach from the parent node
+     * @param endTime max time that the algorithm should run up to
+     * @param moveIndex index of the move in the parent's candidates order
+     * @return the packed score of the child node
+     */
+    protected long searchChild(boolean shouldMaximize, int a, int b, int depth, int depthLeft, long endTime, int moveIndex) {
+        return alphaBetaPruning(!shouldMaximize, a, b, depth + 1, depthLeft - 1, endTime);
+    }
+
+    /**
+     * Called by {@link #alphaBetaPruning} when a move causes a cutoff, after it has been unmarked
+     * @param move the move that caused the cutoff
+     * @param depth depth level of the node
+     * @param depthLeft max depth to reach from the node
+     */
+    protected void onCutoff(MNKCell move, int depth, int depthLeft) {
     }
 
     public AlphaBetaOutcome min(AlphaBetaOutcome o1, AlphaBetaOutcome o2) {
@@ -410,6 +599,189 @@ public class AlphaBetaPruningSearchMoveStrategy implements SearchMoveStrategy<MN
         }
     }
 
+    /**
+     * Same as {@link #min(AlphaBetaOutcome, AlphaBetaOutcome)} on packed scores
+     */
+    public long min(long s1, long s2) {
+        MNKGameState state1 = AlphaBetaOutcome.getState(s1), state2 = AlphaBetaOutcome.getState(s2);
+        if( state1 == state2 ) {
+            return AlphaBetaOutcome.min(s1, s2);
+        }
+        else if( state1 == STATE_LOSE ) {
+            return s1;
+        }
+        else if( state2 == STATE_LOSE) {
+            return s2;
+        }
+        else {
+            return AlphaBetaOutcome.min(s1, s2);
+        }
+    }
+
+    /**
+     * Same as {@link #max(AlphaBetaOutcome, AlphaBetaOutcome)} on packed scores
+     */
+    public long max(long s1, long s2) {
+        MNKGameState state1 = AlphaBetaOutcome.getState(s1), state2 = AlphaBetaOutcome.getState(s2);
+        if( state1 == state2 ) {
+            return AlphaBetaOutcome.max(s1, s2);
+        }
+        else if( state1 == STATE_WIN ) {
+            return s1;
+        }
+        else if( state2 == STATE_WIN) {
+            return s2;
+        }
+        else {
+            return AlphaBetaOutcome.max(s1, s2);
+        }
+    }
+
+    /**
+     * Empty the principal variation of the node at ply, growing the table if it hasn't a row for ply
+     * @param ply depth level of the node
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(1)</code> amortized</li>
+     *      <li>Space: <code>O(1)</code> amortized</li>
+     * </ul>
+     */
+    protected void clearPrincipalVariation(int ply) {
+        if( ply >= principalVariationPlies )
+            growPrincipalVariation(ply + 1);
+        principalVariationEnd[ply] = ply;
+    }
+
+    /**
+     * Set the principal variation of the node at ply to the move, followed by the principal variation of its child at ply + 1
+     * @param ply depth level of the node
+     * @param moveIndex array coordinate of the move
+     * @PreCondition the child has been searched after the last search of any other node at ply + 1
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(L)</code> where L is the length of the principal variation of the child</li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    protected void updatePrincipalVariation(int ply, int moveIndex) {
+        int row = getPrincipalVariationRow(ply);
+        int childEnd = principalVariationEnd[ply + 1];
+        principalVariation[row] = moveIndex;
+        System.arraycopy(principalVariation, getPrincipalVariationRow(ply + 1), principalVariation, row + 1, childEnd - (ply + 1));
+        principalVariationEnd[ply] = childEnd;
+    }
+
+    /**
+     * Set the principal variation of the node at ply to the move only
+     * @param ply depth level of the node
+     * @param moveIndex array coordinate of the move
+     */
+    protected void setPrincipalVariation(int ply, int moveIndex) {
+        clearPrincipalVariation(ply + 1);
+        updatePrincipalVariation(ply, moveIndex);
+    }
+
+    /**
+     * Set the principal variation of the node at ply to the move, followed by the provided line of its child,
+     * as when the child has been searched by another strategy
+     * @param ply depth level of the node
+     * @param moveIndex array coordinate of the move
+     * @param childLine array coordinates of the principal variation of the child, see {@link #getPrincipalVariationIndexes}
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(L)</code> amortized where L is the length of the child line</li>
+     *      <li>Space: <code>O(1)</code> amortized</li>
+     * </ul>
+     */
+    protected void setPrincipalVariation(int ply, int moveIndex, int[] childLine) {
+        if( ply + childLine.length + 1 > principalVariationPlies )
+            growPrincipalVariation(ply + childLine.length + 1);
+        int row = getPrincipalVariationRow(ply);
+        principalVariation[row] = moveIndex;
+        System.arraycopy(childLine, 0, principalVariation, row + 1, childLine.length);
+        principalVariationEnd[ply] = ply + 1 + childLine.length;
+    }
+
+    /**
+     * @param ply depth level of a node
+     * @return the array coordinate of the best move of the last node searched at ply, or {@link #NO_MOVE} if it has no move
+     */
+    protected int getPrincipalVariationMoveIndex(int ply) {
+        return ply < principalVariationPlies && principalVariationEnd[ply] > ply
+                ? principalVariation[getPrincipalVariationRow(ply)]
+                : NO_MOVE;
+    }
+
+    /**
+     * @param ply depth level of a node
+     * @return the best move of the last node searched at ply, or null if it has no move
+     */
+    public MNKCell getPrincipalVariationMove(int ply) {
+        int moveIndex = getPrincipalVariationMoveIndex(ply);
+        return moveIndex != NO_MOVE ? cellsByIndex[moveIndex] : null;
+    }
+
+    /**
+     * @param ply depth level of a node
+     * @return the best line of the last node searched at ply, from its move
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(L)</code> where L is the length of the line</li>
+     *      <li>Space: <code>O(L)</code></li>
+     * </ul>
+     */
+    public MNKCell[] getPrincipalVariation(int ply) {
+        int length = ply < principalVariationPlies ? principalVariationEnd[ply] - ply : 0;
+        int row = getPrincipalVariationRow(ply);
+        MNKCell[] line = new MNKCell[length];
+        for (int k = 0; k < length; k++)
+            line[k] = cellsByIndex[ principalVariation[row + k] ];
+        return line;
+    }
+
+    /**
+     * @param ply depth level of a node
+     * @return the array coordinates of the best line of the last node searched at ply, from its move
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(L)</code> where L is the length of the line</li>
+     *      <li>Space: <code>O(L)</code></li>
+     * </ul>
+     */
+    protected int[] getPrincipalVariationIndexes(int ply) {
+        int length = ply < principalVariationPlies ? principalVariationEnd[ply] - ply : 0;
+        int row = getPrincipalVariationRow(ply);
+        return Arrays.copyOfRange(principalVariation, row, row + length);
+    }
+
+    /**
+     * @return the offset of the row of ply in {@link #principalVariation}, that holds the moves from ply to {@link #principalVariationPlies} excluded
+     */
+    private int getPrincipalVariationRow(int ply) {
+        return ply * principalVariationPlies - ply * (ply - 1) / 2;
+    }
+
+    /**
+     * Grow the principal variation table to at least the provided plies, keeping its rows
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(P^2)</code> where P is the new count of plies</li>
+     *      <li>Space: <code>O(P^2)</code></li>
+     * </ul>
+     */
+    private void growPrincipalVariation(int plies) {
+        int oldPlies = principalVariationPlies;
+        int[] oldTable = principalVariation;
+        int[] oldEnd = principalVariationEnd;
+        principalVariationPlies = Math.min(Math.max(plies, 2 * oldPlies), currentBoard.M * currentBoard.N + 1);
+        principalVariation = new int[principalVariationPlies * (principalVariationPlies + 1) / 2];
+        principalVariationEnd = new int[principalVariationPlies];
+        for (int ply = 0; ply < principalVariationPlies; ply++) {
+            if( ply < oldPlies ) {
+                int oldRow = ply * oldPlies - ply * (ply - 1) / 2;
+                System.arraycopy(oldTable, oldRow, principalVariation, getPrincipalVariationRow(ply), oldEnd[ply] - ply);
+                principalVariationEnd[ply] = oldEnd[ply];
+            }
+            else {
+                principalVariationEnd[ply] = ply;
+            }
+        }
+    }
+
     /**
      * Provide the moves candidates to process in {@link #alphaBetaPruning(boolean, int, int, int, int, long)} node
      * @implNote
@@ -461,10 +833,4 @@ public class AlphaBetaPruningSearchMoveStrategy implements SearchMoveStrategy<MN
         return Utils.toString(currentBoard);
     }
 
-
-    public static class EarlyExitException extends RuntimeException {
-        public EarlyExitException(String msg) {
-            super(msg);
-        }
-    }
 }
\ No newline at end of file
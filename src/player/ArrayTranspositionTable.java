@@ -0,0 +1,83 @@
+package player;
+
+import java.util.Arrays;
+
+/**
+ * Transposition table stored on heap over parallel primitive arrays,
+ * so no object is allocated on lookups and stores, and the memory used is known since its creation.
+ * See {@link AbstractTranspositionTable} for the slots layout.
+ */
+public class ArrayTranspositionTable extends AbstractTranspositionTable {
+
+    protected long[] keys;
+    protected long[] verificationKeys;
+    protected long[] values;
+    protected int[] moves;
+
+    /**
+     * @param sizeInMB max memory in megabytes used by the table
+     * @param useVerificationKey if true then also stores and checks the verification key of {@link ZobristHashableBoardState}
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(S)</code> where S is the slots count</li>
+     *      <li>Space: <code>O(S)</code></li>
+     * </ul>
+     */
+    public ArrayTranspositionTable(int sizeInMB, boolean useVerificationKey) {
+        super((long) sizeInMB << 20, Long.BYTES + Long.BYTES + Integer.BYTES + (useVerificationKey ? Long.BYTES : 0), 1L << 30, useVerificationKey);
+        keys = new long[capacity];
+        verificationKeys = useVerificationKey ? new long[capacity] : null;
+        values = new long[capacity];
+        moves = new int[capacity];
+    }
+
+    @Override
+    protected long getKeyAt(int slot) {
+        return keys[slot];
+    }
+
+    @Override
+    protected long getVerificationKeyAt(int slot) {
+        return verificationKeys != null ? verificationKeys[slot] : 0L;
+    }
+
+    @Override
+    protected long getValueAt(int slot) {
+        return values[slot];
+    }
+
+    @Override
+    protected int getMoveAt(int slot) {
+        return moves[slot];
+    }
+
+    @Override
+    protected void setSlot(int slot, long key, long verificationKey, long value, int move) {
+        keys[slot] = key;
+        if( verificationKeys != null )
+            verificationKeys[slot] = verificationKey;
+        values[slot] = value;
+        moves[slot] = move;
+    }
+
+    /**
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(S)</code> where S is the slots count</li>
+     * </ul>
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(values, 0L);
+        usedSlots = 0;
+    }
+
+    /**
+     * Drop the references to the arrays, so the garbage collector can reclaim them
+     */
+    @Override
+    public void free() {
+        keys = null;
+        verificationKeys = null;
+        values = null;
+        moves = null;
+    }
+}
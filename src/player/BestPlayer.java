@@ -13,6 +13,9 @@ public class BestPlayer implements MNKPlayer {
 
     @Override
     public void initPlayer(int M, int N, int K, boolean first, int timeout_in_secs) {
+        // the previous game is ended
+        if( moveStrategy != null )
+            moveStrategy.release();
         setSearchMoveStrategy(new TranspositionSearchMoveStrategy());
 
         moveStrategy.init(M, N, K, first, timeout_in_secs);
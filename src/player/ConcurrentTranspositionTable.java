@@ -0,0 +1,292 @@
+package player;
+
+import mnkgame.MNKGameState;
+import player.TranspositionSearchMoveStrategy.TranspositionData;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transposition table that can be probed and stored concurrently by many threads without locks.
+ * The slots are shared by all views of the table (see {@link #newView()}), and each thread must use its own view,
+ * as a view keeps the snapshot of the transposition found by its last {@link #probe}.
+ *
+ * Each slot is stored as 4 words <code>check | value | move | verification key</code>, where
+ * <code>check = key ^ value ^ move ^ verification key</code>, and the key is recovered from the other words on probes.
+ * So a slot torn by concurrent stores yields a key that doesn't match, and it's ignored as a miss
+ * (see R. Hyatt, T. Mann: "A lock-less transposition table implementation for parallel search chess engines").
+ * The words are accessed with opaque memory order, so each word is read and written atomically without fences.
+ *
+ * The content of the value and move words, and the replacement policy of the buckets,
+ * are the same of {@link AbstractTranspositionTable}, but concurrent stores on the same bucket may lose one of the transpositions.
+ */
+public class ConcurrentTranspositionTable implements TranspositionTable {
+
+    protected static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+    protected static final int SLOT_WORDS = 4;
+    protected static final int CHECK_WORD = 0;
+    protected static final int VALUE_WORD = 1;
+    protected static final int MOVE_WORD = 2;
+    protected static final int VERIFICATION_KEY_WORD = 3;
+
+    protected final int capacity;
+    protected final int mask;
+    protected final boolean useVerificationKey;
+    // shared by all views
+    protected long[] words;
+    protected final AtomicInteger generation;
+    // approximated, as concurrent stores on the same free slot count it more times
+    protected final LongAdder usedSlots;
+    // counters of this view
+    protected TranspositionTableStats stats;
+
+    // snapshot of the last probed transposition of this view
+    protected int probedSlot;
+    protected long probedValue;
+    protected int probedMove;
+
+    /**
+     * @param sizeInMB max memory in megabytes used by the table
+     * @param useVerificationKey if true then also checks the verification key of {@link ZobristHashableBoardState}
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(S)</code> where S is the slots count</li>
+     *      <li>Space: <code>O(S)</code></li>
+     * </ul>
+     */
+    public ConcurrentTranspositionTable(int sizeInMB, boolean useVerificationKey) {
+        long slotsCount = ((long) sizeInMB << 20) / (SLOT_WORDS * Long.BYTES);
+        capacity = (int) Long.highestOneBit(Math.min(Math.max(AbstractTranspositionTable.BUCKET_SIZE, slotsCount), 1L << 28));
+        mask = (capacity / AbstractTranspositionTable.BUCKET_SIZE) - 1;
+        this.useVerificationKey = useVerificationKey;
+        words = new long[capacity * SLOT_WORDS];
+        generation = new AtomicInteger(0);
+        usedSlots = new LongAdder();
+        probedSlot = -1;
+    }
+
+    /**
+     * Create a view of table, that shares its slots and generation
+     */
+    protected ConcurrentTranspositionTable(ConcurrentTranspositionTable table) {
+        capacity = table.capacity;
+        mask = table.mask;
+        useVerificationKey = table.useVerificationKey;
+        words = table.words;
+        generation = table.generation;
+        usedSlots = table.usedSlots;
+        probedSlot = -1;
+    }
+
+    /**
+     * @return a new view of this table, to be used by another thread
+     */
+    public ConcurrentTranspositionTable newView() {
+        return new ConcurrentTranspositionTable(this);
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Start a new search for all views of the table.
+     * @PreCondition it should be called by a single view, while no other thread is searching
+     */
+    @Override
+    public void newSearch() {
+        generation.set((generation.get() + 1) & (int) AbstractTranspositionTable.GENERATION_MASK);
+    }
+
+    @Override
+    public int getGeneration() {
+        return generation.get();
+    }
+
+    @Override
+    public long usedSlots() {
+        return usedSlots.sum();
+    }
+
+    /**
+     * Set the counters of the events of this view
+     */
+    @Override
+    public void setStats(TranspositionTableStats stats) {
+        this.stats = stats;
+    }
+
+    protected long getWord(int slot, int word) {
+        return (long) WORDS.getOpaque(words, slot * SLOT_WORDS + word);
+    }
+
+    protected void setWord(int slot, int word, long value) {
+        WORDS.setOpaque(words, slot * SLOT_WORDS + word, value);
+    }
+
+    /**
+     * Read the slot, and if it stores a consistent transposition of the provided keys then save it as the view's snapshot
+     * @return true if the snapshot has been saved
+     */
+    protected boolean read(int slot, long key, long verificationKey) {
+        long check = getWord(slot, CHECK_WORD);
+        long value = getWord(slot, VALUE_WORD);
+        long move = getWord(slot, MOVE_WORD);
+        long verification = getWord(slot, VERIFICATION_KEY_WORD);
+        if( (value & AbstractTranspositionTable.USED_FLAG) == 0
+            || (check ^ value ^ move ^ verification) != key ) {
+            return false;
+        }
+        if( useVerificationKey && verification != verificationKey ) {
+            if( stats != null )
+                stats.count(TranspositionTableStats.COLLISIONS);
+            return false;
+        }
+        probedSlot = slot;
+        probedValue = value;
+        probedMove = (int) move;
+        return true;
+    }
+
+    protected void write(int slot, long key, long verificationKey, long value, long move) {
+        if( slot == probedSlot )
+            probedSlot = -1;
+        if( (getWord(slot, VALUE_WORD) & AbstractTranspositionTable.USED_FLAG) == 0 )
+            usedSlots.increment();
+        else if( stats != null ) {
+            long oldVerificationKey = getWord(slot, VERIFICATION_KEY_WORD);
+            long oldKey = getWord(slot, CHECK_WORD) ^ getWord(slot, VALUE_WORD) ^ getWord(slot, MOVE_WORD) ^ oldVerificationKey;
+            if( oldKey != key || oldVerificationKey != verificationKey )
+                stats.count(TranspositionTableStats.OVERWRITES);
+        }
+        setWord(slot, VALUE_WORD, value);
+        setWord(slot, MOVE_WORD, move);
+        setWord(slot, VERIFICATION_KEY_WORD, verificationKey);
+        setWord(slot, CHECK_WORD, key ^ value ^ move ^ verificationKey);
+    }
+
+    /**
+     * @return the slot of the transposition, valid for the getters of this view up to its next probe
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O({@link AbstractTranspositionTable#BUCKET_SIZE}) = O(1)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    @Override
+    public int probe(long key, long verificationKey) {
+        int depthSlot = ((int) key & mask) * AbstractTranspositionTable.BUCKET_SIZE;
+        if( read(depthSlot, key, verificationKey) || read(depthSlot + 1, key, verificationKey) )
+            return probedSlot;
+        probedSlot = -1;
+        return -1;
+    }
+
+    /**
+     * Store the transposition with the replacement policy of {@link AbstractTranspositionTable#store},
+     * deciding on a snapshot of the depth-preferred slot
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O({@link AbstractTranspositionTable#BUCKET_SIZE}) = O(1)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    @Override
+    public void store(long key, long verificationKey, int eval, int depthLeft, TranspositionData.ValueType type, MNKGameState state, int moveIndex, int outcomeDepth) {
+        if( !useVerificationKey )
+            verificationKey = 0L;
+        int currentGeneration = generation.get();
+        int depthSlot = ((int) key & mask) * AbstractTranspositionTable.BUCKET_SIZE;
+        int alwaysSlot = depthSlot + 1;
+        long value = (eval & 0xFFFFFFFFL)
+                | ((depthLeft & AbstractTranspositionTable.DEPTH_MASK) << AbstractTranspositionTable.DEPTH_SHIFT)
+                | (((long) type.ordinal()) << AbstractTranspositionTable.TYPE_SHIFT)
+                | (((long) state.ordinal()) << AbstractTranspositionTable.STATE_SHIFT)
+                | (((long) currentGeneration) << AbstractTranspositionTable.GENERATION_SHIFT)
+                | AbstractTranspositionTable.USED_FLAG;
+        long move = (((moveIndex + 1) & AbstractTranspositionTable.MOVE_MASK) | ((outcomeDepth & AbstractTranspositionTable.MOVE_MASK) << 16)) & 0xFFFFFFFFL;
+        if( stats != null )
+            stats.count(TranspositionTableStats.STORES);
+
+        long oldCheck = getWord(depthSlot, CHECK_WORD);
+        long oldValue = getWord(depthSlot, VALUE_WORD);
+        long oldMove = getWord(depthSlot, MOVE_WORD);
+        long oldVerificationKey = getWord(depthSlot, VERIFICATION_KEY_WORD);
+        long oldKey = oldCheck ^ oldValue ^ oldMove ^ oldVerificationKey;
+        boolean isOldUsed = (oldValue & AbstractTranspositionTable.USED_FLAG) != 0
+                // a torn slot is considered free
+                && ((int) oldKey & mask) * AbstractTranspositionTable.BUCKET_SIZE == depthSlot;
+        boolean isOldStale = AbstractTranspositionTable.getAge(oldValue, currentGeneration) != 0;
+
+        if( !isOldUsed || AbstractTranspositionTable.isDepthReplaceable(oldValue, currentGeneration, depthLeft) ) {
+            // keep the replaced transposition, unless it's the same state or it's stale, as it would evict a newer one
+            if( isOldUsed && !isOldStale && (oldKey != key || oldVerificationKey != verificationKey) )
+                write(alwaysSlot, oldKey, oldVerificationKey, oldValue, oldMove);
+            write(depthSlot, key, verificationKey, value, move);
+        }
+        else {
+            write(alwaysSlot, key, verificationKey, value, move);
+        }
+    }
+
+    protected long getValue(int slot) {
+        return slot == probedSlot ? probedValue : getWord(slot, VALUE_WORD);
+    }
+
+    protected int getMoveWord(int slot) {
+        return slot == probedSlot ? probedMove : (int) getWord(slot, MOVE_WORD);
+    }
+
+    @Override
+    public int getEval(int slot) {
+        return (int) getValue(slot);
+    }
+
+    @Override
+    public int getDepth(int slot) {
+        return (int) ((getValue(slot) >>> AbstractTranspositionTable.DEPTH_SHIFT) & AbstractTranspositionTable.DEPTH_MASK);
+    }
+
+    @Override
+    public TranspositionData.ValueType getType(int slot) {
+        return AbstractTranspositionTable.TYPES[(int) ((getValue(slot) >>> AbstractTranspositionTable.TYPE_SHIFT) & AbstractTranspositionTable.TYPE_MASK)];
+    }
+
+    @Override
+    public MNKGameState getState(int slot) {
+        return AbstractTranspositionTable.STATES[(int) ((getValue(slot) >>> AbstractTranspositionTable.STATE_SHIFT) & AbstractTranspositionTable.STATE_MASK)];
+    }
+
+    @Override
+    public int getMove(int slot) {
+        return (getMoveWord(slot) & AbstractTranspositionTable.MOVE_MASK) - 1;
+    }
+
+    @Override
+    public int getOutcomeDepth(int slot) {
+        return getMoveWord(slot) >>> 16;
+    }
+
+    /**
+     * @PreCondition no other thread is using the table
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(S)</code> where S is the slots count</li>
+     * </ul>
+     */
+    @Override
+    public void clear() {
+        for (int slot = 0; slot < capacity; slot++)
+            setWord(slot, VALUE_WORD, 0L);
+        usedSlots.reset();
+        probedSlot = -1;
+    }
+
+    /**
+     * Drop the reference to the slots of this view, that are reclaimed by the garbage collector when all views are freed
+     */
+    @Override
+    public void free() {
+        words = null;
+        probedSlot = -1;
+    }
+}
@@ -1,11 +1,49 @@
 package player;
 
 import mnkgame.MNKCell;
+import mnkgame.MNKGameState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class IterativeDeepeningSearchMoveStrategy extends ThreatSearchMoveStrategy {
 
     public static final boolean DEBUG_SHOW_DECISION_INFO = Debug.Player.DEBUG_SHOW_DECISION_INFO;
     protected int lastMaxDepth;
+    // depth of the first iteration of iterativeDeepening
+    protected int firstIterationDepth = 1;
+    // depth of the last iteration completed by iterativeDeepening, or 0 if none
+    protected int lastCompletedDepth;
+    /**
+     * Count of worker threads that search the root moves together with the caller thread, or 0 to search only on the caller thread.
+     * Each worker owns a replica of this strategy, with its own board and threat detection logic, rebuilt from the marked cells on each {@link #initSearch},
+     * and the root moves are assigned to the first free thread, that searches them with the best alpha found so far.
+     * See {@link #rootSplitAlphaBetaPruning}
+     */
+    public int ROOT_SPLIT_WORKERS = 0;
+    /**
+     * If true, each iteration after the first one searches in a window of {@link #ASPIRATION_WINDOW} around the eval of the previous iteration,
+     * and on fail low or fail high searches again with the window widened by {@link #ASPIRATION_WINDOW_GROWTH} on the failed side.
+     * Disabled by default: the heuristic eval swings between odd and even depths by more than the window, so the re-searches cost more than the cutoffs save
+     */
+    public boolean USE_ASPIRATION_WINDOWS = false;
+    public int ASPIRATION_WINDOW = 1000;
+    public int ASPIRATION_WINDOW_GROWTH = 4;
+    protected IterativeDeepeningSearchMoveStrategy[] rootSplitReplicas;
+    protected ExecutorService rootSplitExecutor;
+    /**
+     * If true, the search time of each move and the start of each iteration are decided by a {@link TimeManager},
+     * that learns the exit latency and predicts the time of the next iteration;
+     * otherwise the search ends at a fixed ratio of the timeout, reduced by the depth of the last search
+     */
+    public boolean USE_TIME_MANAGER = false;
+    protected TimeManager timeManager;
 
 
     @Override
@@ -14,6 +52,36 @@ public class IterativeDeepeningSearchMoveStrategy extends ThreatSearchMoveStrate
         this.maxDepthSearch = M * N;
         this.USE_FAST_REWIND = true;
         this.lastMaxDepth = 0;
+        this.timeManager = USE_TIME_MANAGER ? new TimeManager(timeout, estimatedPercentOfTimeRequiredToExit) : null;
+
+        if( ROOT_SPLIT_WORKERS > 0 ) {
+            rootSplitReplicas = new IterativeDeepeningSearchMoveStrategy[ROOT_SPLIT_WORKERS];
+            for (int r = 0; r < rootSplitReplicas.length; r++) {
+                rootSplitReplicas[r] = new IterativeDeepeningSearchMoveStrategy();
+                rootSplitReplicas[r].USE_SOLVED_POSITIONS = false;
+                rootSplitReplicas[r].ENDGAME_SOLVER_FREE_CELLS = 0;
+                rootSplitReplicas[r].init(M, N, K, first, timeout_in_secs);
+                rootSplitReplicas[r].solvedPositions = solvedPositions;
+            }
+            rootSplitExecutor = Executors.newFixedThreadPool(ROOT_SPLIT_WORKERS, runnable -> {
+                Thread thread = new Thread(runnable, "root-split-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Shutdown the root split workers
+     */
+    @Override
+    public void release() {
+        if( rootSplitExecutor != null ) {
+            rootSplitExecutor.shutdownNow();
+            rootSplitExecutor = null;
+            rootSplitReplicas = null;
+        }
+        super.release();
     }
 
     @Override
@@ -22,13 +90,40 @@ public class IterativeDeepeningSearchMoveStrategy extends ThreatSearchMoveStrate
         super.initSearch(FC, MC);
         this.maxDepthSearch = currentBoard.getFreeCellsCount();
 
-        float expectedTimeRequiredToExit = (estimatedPercentOfTimeRequiredToExit * timeout)
-                + lastMaxDepth*(float)Math.log( Math.max(currentBoard.getFreeCellsCount(), currentBoard.getMarkedCellsCount()));
-        expectedEndTime = realEndTime - (long)expectedTimeRequiredToExit;
+        if( timeManager != null ) {
+            expectedEndTime = timeManager.startMove(realEndTime);
+        }
+        else {
+            float expectedTimeRequiredToExit = (estimatedPercentOfTimeRequiredToExit * timeout)
+                    + lastMaxDepth * (float) Math.log(Math.max(currentBoard.getFreeCellsCount(), currentBoard.getMarkedCellsCount()));
+            expectedEndTime = realEndTime - (long) expectedTimeRequiredToExit;
+        }
+
+        if( rootSplitReplicas != null ) {
+            // replicas are left in invalid state by each search, so they restore only the moves after their last valid state
+            for (IterativeDeepeningSearchMoveStrategy replica : rootSplitReplicas)
+                replica.restore(FC, MC);
+        }
+    }
+
+    /**
+     * Mark the move, and measure the exit latency of the search if it has been interrupted by the end of its time,
+     * from the moment it noticed it up to now, including the join of any other thread
+     */
+    @Override
+    public void postSearch() {
+        super.postSearch();
+        if( timeManager != null ) {
+            timeManager.endMove(startingExitTime, System.currentTimeMillis(), isEarlyExitStarted);
+            if( DEBUG_SHOW_INFO )
+                Debug.println("Time manager: " + timeManager);
+        }
     }
 
     @Override
     public MNKCell search() {
+        // no depth is completed by the searches that don't reach the iterative deepening
+        lastCompletedDepth = 0;
         switch ( round ){
             case 0: // move as first
                 lastResult = strategyAsFirst();
@@ -40,6 +135,10 @@ public class IterativeDeepeningSearchMoveStrategy extends ThreatSearchMoveStrate
                 if ( DEBUG_SHOW_CANDIDATES )
                     Debug.println("Candidates: " + this.getMovesCandidates());
 
+                lastResult = searchForcedWin();
+                if( lastResult != null )
+                    break;
+
                 lastResult = iterativeDeepening(
                         true,
                         STANDARD_SCORES.get(STATE_LOSE),
@@ -67,40 +166,45 @@ public class IterativeDeepeningSearchMoveStrategy extends ThreatSearchMoveStrate
 
         boolean isOutOfTime = false;
         lastMaxDepth = 1;
-        for (int maxDepth = 1; maxDepth <= maxDepthSearch; maxDepth++) {
+        lastCompletedDepth = 0;
+        for (int maxDepth = Math.min(firstIterationDepth, maxDepthSearch); maxDepth <= maxDepthSearch; maxDepth++) {
 
             partialStartTime = System.currentTimeMillis();
+            if( timeManager != null )
+                timeManager.startIteration(partialStartTime, getNodesCount());
 
-            try {
-                if( DEBUG_SHOW_INFO ) {
-                    Debug.println("Start searching up to depth " + maxDepth);
-                }
-                outcome = super.alphaBetaPruning(
-                        shouldMaximize,
-                        a,
-                        b,
-                        0,
-                        maxDepth,
-                        expectedEndTime
-                );
-                // keep last depth that don't cause an EarlyExit
+            if( DEBUG_SHOW_INFO ) {
+                Debug.println("Start searching up to depth " + maxDepth);
+            }
+            AlphaBetaOutcome iterationOutcome;
+            if( USE_ASPIRATION_WINDOWS && lastCompletedDepth > 0 && outcome.state == MNKGameState.OPEN )
+                iterationOutcome = aspirationSearch(shouldMaximize, a, b, maxDepth, outcome.eval);
+            else
+                iterationOutcome = searchRoot(shouldMaximize, a, b, maxDepth);
+
+            if( isRewinding() ) {
+                // the search has been rewound to the root, so the board is still valid but the outcome isn't
+                isOutOfTime = true;
+            }
+            else {
+                outcome = iterationOutcome;
+                // keep last depth that don't cause an early exit
                 lastMaxDepth = maxDepth;
+                lastCompletedDepth = maxDepth;
                 isOutOfTime = isEarlyExitStarted;
                 if( DEBUG_SHOW_DECISION_INFO ){
                     Debug.println(Utils.ConsoleColors.CYAN +
                             "Search up to depth " + maxDepth + " end with choice :" + outcome
+                            + " principal variation: " + Arrays.toString(getPrincipalVariation(0))
                             + Utils.ConsoleColors.RESET
                     );
                 }
             }
-            catch (EarlyExitException e) {
-                // set in invalid state, because if running out time, internal data structure are in in invalid state
-                invalidateState();
-                isOutOfTime = true;
-            }
 
             partialEndTime = System.currentTimeMillis();
             partialElapsed = partialEndTime - partialStartTime;
+            if( timeManager != null && !isOutOfTime )
+                timeManager.endIteration(partialEndTime, getNodesCount());
 
             if (isOutOfTime) {
                 if( DEBUG_SHOW_INFO ) {
@@ -114,6 +218,16 @@ public class IterativeDeepeningSearchMoveStrategy extends ThreatSearchMoveStrate
                 }
                 break;
             }
+
+            if( timeManager != null && maxDepth < maxDepthSearch && !timeManager.canStartIteration(partialEndTime, expectedEndTime) ) {
+                if( DEBUG_SHOW_INFO ) {
+                    Debug.println(Utils.ConsoleColors.YELLOW +
+                            "Skip depth " + (maxDepth + 1) + ", predicted time (ms) = " + timeManager.predictNextIterationTime() +
+                            "; Time left from prediction (ms) = " + (expectedEndTime - partialEndTime) + Utils.ConsoleColors.RESET
+                    );
+                }
+                break;
+            }
         }
 
         endTime = partialEndTime;
@@ -123,4 +237,163 @@ public class IterativeDeepeningSearchMoveStrategy extends ThreatSearchMoveStrate
         return outcome;
     }
 
+    /**
+     * Search the root up to the provided depth, in parallel if {@link #ROOT_SPLIT_WORKERS} is greater than 0
+     */
+    protected AlphaBetaOutcome searchRoot(boolean shouldMaximize, int a, int b, int maxDepth) {
+        if( rootSplitReplicas != null && shouldMaximize && solvedPositions == null ) {
+            return rootSplitAlphaBetaPruning(a, b, maxDepth, expectedEndTime);
+        }
+        else {
+            long score = super.alphaBetaPruning(
+                    shouldMaximize,
+                    a,
+                    b,
+                    0,
+                    maxDepth,
+                    expectedEndTime
+            );
+            return new AlphaBetaOutcome(score, getPrincipalVariationMove(0));
+        }
+    }
+
+    /**
+     * Search the root in a window around the expected eval, widening the window on the failed side until the eval falls inside it
+     * @param a lower bound of the widest window
+     * @param b upper bound of the widest window
+     * @param maxDepth max depth to reach
+     * @param expectedEval the eval of the previous iteration
+     * @return the outcome of the search, with an eval inside the final window
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O( T({@link #searchRoot}) * log(b - a) )</code> on worst case, usually <code>T({@link #searchRoot})</code></li>
+     * </ul>
+     */
+    protected AlphaBetaOutcome aspirationSearch(boolean shouldMaximize, int a, int b, int maxDepth, int expectedEval) {
+        long delta = ASPIRATION_WINDOW;
+        int alpha = (int) Math.max(a, (long) expectedEval - delta);
+        int beta = (int) Math.min(b, (long) expectedEval + delta);
+
+        while (true) {
+            AlphaBetaOutcome outcome = searchRoot(shouldMaximize, alpha, beta, maxDepth);
+            if( isRewinding() )
+                return outcome;
+            delta *= ASPIRATION_WINDOW_GROWTH;
+            if( outcome.eval <= alpha && alpha > a ) {
+                if( DEBUG_SHOW_DECISION_INFO )
+                    Debug.println("Aspiration window fail low on depth " + maxDepth + ": " + outcome.eval + " <= " + alpha);
+                alpha = (int) Math.max(a, (long) expectedEval - delta);
+            }
+            else if( outcome.eval >= beta && beta < b ) {
+                if( DEBUG_SHOW_DECISION_INFO )
+                    Debug.println("Aspiration window fail high on depth " + maxDepth + ": " + outcome.eval + " >= " + beta);
+                beta = (int) Math.min(b, (long) expectedEval + delta);
+            }
+            else {
+                return outcome;
+            }
+        }
+    }
+
+    /**
+     * Search the root moves in parallel, on this strategy and on its replicas.
+     * Each thread takes the next root move not yet taken, and searches it with the best alpha found so far by all threads
+     * @param a best score for this player
+     * @param b best score for simulated enemy
+     * @param depthLeft max depth to reach
+     * @param endTime max time that the algorithm should run up to
+     * @return the outcome of the best root move, that isn't valid if {@link #isRewinding()} as any thread ran out of time
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O( T({@link #alphaBetaPruning}) / W )</code> on best case, where W is the count of threads</li>
+     *      <li>Space: <code>O( W * S({@link #alphaBetaPruning}) )</code></li>
+     * </ul>
+     */
+    protected AlphaBetaOutcome rootSplitAlphaBetaPruning(int a, int b, int depthLeft, long endTime) {
+        List<MNKCell> moves = new ArrayList<>();
+        for (MNKCell move : getMovesCandidates())
+            moves.add(move);
+        AlphaBetaOutcome[] outcomes = new AlphaBetaOutcome[moves.size()];
+        int[][] lines = new int[moves.size()][];
+        AtomicInteger nextMove = new AtomicInteger(0);
+        AtomicInteger alpha = new AtomicInteger(a);
+
+        Future<?>[] workers = new Future<?>[rootSplitReplicas.length];
+        for (int r = 0; r < rootSplitReplicas.length; r++) {
+            IterativeDeepeningSearchMoveStrategy replica = rootSplitReplicas[r];
+            workers[r] = rootSplitExecutor.submit(() -> {
+                replica.isEarlyExitStarted = false;
+                try {
+                    replica.searchRootMoves(moves, outcomes, lines, nextMove, alpha, b, depthLeft, endTime);
+                }
+                finally {
+                    replica.invalidateState();
+                }
+            });
+        }
+
+        RuntimeException failure = null;
+        try {
+            searchRootMoves(moves, outcomes, lines, nextMove, alpha, b, depthLeft, endTime);
+        }
+        catch (RuntimeException e) {
+            failure = e;
+        }
+        for (Future<?> worker : workers) {
+            try {
+                worker.get();
+            }
+            catch (ExecutionException e) {
+                if( failure == null )
+                    failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                isEarlyExitStarted = true;
+            }
+        }
+        if( failure != null ) {
+            isEarlyExitStarted = true;
+            throw failure;
+        }
+        for (IterativeDeepeningSearchMoveStrategy replica : rootSplitReplicas) {
+            if( replica.isRewinding() && !isEarlyExitStarted ) {
+                isEarlyExitStarted = true;
+                startingExitTime = replica.startingExitTime;
+            }
+        }
+        if( isRewinding() )
+            return null;
+
+        int best = -1;
+        for (int m = 0; m < outcomes.length; m++) {
+            // not searched, as a winning move has been found
+            if( outcomes[m] == null )
+                continue;
+            if( best < 0 || max(outcomes[best], outcomes[m]) != outcomes[best] )
+                best = m;
+        }
+        if( best < 0 )
+            return null;
+
+        // the root isn't searched by alphaBetaPruning, so its principal variation is the one of the thread that searched the best move
+        MNKCell bestMove = outcomes[best].move;
+        setPrincipalVariation(0, bestMove.i * currentBoard.N + bestMove.j, lines[best]);
+        return outcomes[best];
+    }
+
+    /**
+     * Search the root moves not yet taken by other threads, storing the outcome and the principal variation of each searched move
+     */
+    protected void searchRootMoves(List<MNKCell> moves, AlphaBetaOutcome[] outcomes, int[][] lines, AtomicInteger nextMove, AtomicInteger alpha, int b, int depthLeft, long endTime) {
+        for (int m = nextMove.getAndIncrement(); m < moves.size() && alpha.get() < b; m = nextMove.getAndIncrement()) {
+            MNKCell move = moves.get(m);
+            mark(move);
+            long score = alphaBetaPruning(false, alpha.get(), b, 1, depthLeft - 1, endTime);
+            unMark();
+            if( isRewinding() )
+                return;
+            outcomes[m] = new AlphaBetaOutcome(score, move);
+            lines[m] = getPrincipalVariationIndexes(1);
+            alpha.accumulateAndGet(AlphaBetaOutcome.getEval(score), Math::max);
+        }
+    }
 }
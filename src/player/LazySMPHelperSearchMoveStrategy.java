@@ -0,0 +1,117 @@
+package player;
+
+import mnkgame.MNKCell;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helper of a {@link TranspositionSearchMoveStrategy} in Lazy SMP mode (see {@link TranspositionSearchMoveStrategy#LAZY_SMP_HELPERS}).
+ * A helper runs on its own thread the same iterative deepening of the main strategy, on its own board and threat detection replicas,
+ * and communicates only through a view of the shared {@link ConcurrentTranspositionTable}.
+ * The helpers diverge from the main search, so they fill the table with the transpositions the main search will need next:
+ * <ul>
+ *     <li>odd helpers start the iterative deepening one depth deeper</li>
+ *     <li>each helper searches first a different root move, the one at position <code>index</code> of the candidates</li>
+ * </ul>
+ * The helper never marks its own moves: after each search its state is left invalid,
+ * so the next {@link #initSearch} restores its board from the game's marked cells.
+ */
+public class LazySMPHelperSearchMoveStrategy extends TranspositionSearchMoveStrategy {
+
+    protected final int index;
+    protected final ConcurrentTranspositionTable sharedTable;
+    protected volatile boolean isStopRequested;
+    protected int rootRound;
+
+    /**
+     * @param index index of this helper, starting from 1, or 0 for a helper that doesn't diverge from the main search, as the ponderer
+     * @param sharedTable the table of the main strategy
+     */
+    public LazySMPHelperSearchMoveStrategy(int index, ConcurrentTranspositionTable sharedTable) {
+        super();
+        this.index = index;
+        this.sharedTable = sharedTable;
+        USE_OPENING_BOOK = false;
+        USE_SOLVED_POSITIONS = false;
+        USE_TRANSPOSITION_TABLE_STATS = false;
+        USE_THREAT_SPACE_SEARCH = false;
+        ENDGAME_SOLVER_FREE_CELLS = 0;
+        LAZY_SMP_HELPERS = 0;
+    }
+
+    @Override
+    public void init(int M, int N, int K, boolean first, int timeout_in_secs) {
+        super.init(M, N, K, first, timeout_in_secs);
+        firstIterationDepth = 1 + (index % 2);
+    }
+
+    @Override
+    protected TranspositionTable createTranspositionTable() {
+        return sharedTable.newView();
+    }
+
+    /**
+     * The generation of the shared table is started only by the main strategy, before the helpers are submitted,
+     * see {@link ConcurrentTranspositionTable#newSearch()}
+     */
+    @Override
+    protected void newTranspositionSearch() {
+    }
+
+    /**
+     * Search the position of the marked cells, until the time runs out or {@link #stop()} is called
+     * @param FC free cells of the game
+     * @param MC marked cells of the game
+     * @return the outcome of the search
+     */
+    public AlphaBetaOutcome searchHelper(MNKCell[] FC, MNKCell[] MC) {
+        isStopRequested = false;
+        initSearch(FC, MC);
+        rootRound = getSimulatedRound();
+        search();
+        // the board has to be restored from MC by next search
+        invalidateState();
+        return lastResult;
+    }
+
+    /**
+     * Stop the current search as soon as possible
+     */
+    public void stop() {
+        isStopRequested = true;
+    }
+
+    /**
+     * The transposition table is shared, so it's released by the main strategy
+     */
+    @Override
+    public void release() {
+        transpositionTable = null;
+    }
+
+    @Override
+    public Iterable<MNKCell> getMovesCandidates() {
+        Iterable<MNKCell> candidates = super.getMovesCandidates();
+        if( getSimulatedRound() != rootRound )
+            return candidates;
+
+        // perturb the root moves order
+        List<MNKCell> moves = new ArrayList<>();
+        for (MNKCell move : candidates)
+            moves.add(move);
+        if( moves.size() > 1 )
+            moves.add(0, moves.remove(index % moves.size()));
+        return moves;
+    }
+
+    @Override
+    protected long alphaBetaPruning(boolean shouldMaximize, int a, int b, int depth, int depthLeft, long endTime) {
+        if( isStopRequested ) {
+            // rewind as on timeout
+            isEarlyExitStarted = true;
+            return AlphaBetaOutcome.NO_SCORE;
+        }
+        return super.alphaBetaPruning(shouldMaximize, a, b, depth, depthLeft, endTime);
+    }
+}
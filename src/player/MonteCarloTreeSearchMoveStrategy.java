@@ -0,0 +1,467 @@
+package player;
+
+import mnkgame.MNKCell;
+import mnkgame.MNKCellState;
+import mnkgame.MNKGameState;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * This class searches the best next move with the Monte Carlo Tree Search, selecting the nodes by UCT with a progressive bias of the threat priorities.
+ * It doesn't require an evaluation function, so it fits the very large boards where the alpha beta search reaches only a tiny depth.
+ * <ul>
+ *     <li>The tree nodes are stored in primitive arrays, indexed by node, and the children of a node are contiguous,
+ *     so the search doesn't allocate any node object.</li>
+ *     <li>A leaf is expanded after {@link #MCTS_EXPANSION_VISITS} visits, with at most {@link #MCTS_MAX_CHILDREN} children,
+ *     the free cells of highest {@link ScanThreatDetectionLogic#freeCellsPrioritiesCache} priority, that is also the prior of each child.
+ *     Only the expansion marks the node's path on the threat detection logic.</li>
+ *     <li>The playouts are played with uniformly random moves on a lightweight array board, that is restored by undoing its moves,
+ *     so they don't allocate and don't update the threat detection logic.</li>
+ * </ul>
+ * The count of playouts per second is printed with the stats, see {@link #getPlayoutsPerSecond()}.
+ */
+public class MonteCarloTreeSearchMoveStrategy extends ThreatSearchMoveStrategy {
+
+    protected static final int FREE = -1;
+    protected static final int ROOT = 0;
+    protected static final byte NOT_TERMINAL = 0;
+    protected static final byte WIN_TERMINAL = 1;
+    protected static final byte DRAW_TERMINAL = 2;
+    // points of a playout result, relative to a player
+    protected static final int WIN_POINTS = 2;
+    protected static final int DRAW_POINTS = 1;
+
+    /**
+     * Max count of nodes of the tree, after that the leaves are no more expanded
+     */
+    public int MCTS_MAX_NODES = 1 << 20;
+    /**
+     * Max count of children of a node, the free cells with the highest threat priorities
+     */
+    public int MCTS_MAX_CHILDREN = 48;
+    /**
+     * Visits of a leaf required to expand it
+     */
+    public int MCTS_EXPANSION_VISITS = 4;
+    /**
+     * Weight of the UCT exploration term
+     */
+    public float MCTS_EXPLORATION = 0.7f;
+    /**
+     * Weight of the prior of a child, that decreases with its visits
+     */
+    public float MCTS_PRIOR_WEIGHT = 1f;
+    /**
+     * Value of a child not visited yet, instead of its win rate
+     */
+    public float MCTS_FIRST_PLAY_URGENCY = 1f;
+
+    // tree: nodes by index, the root is at ROOT
+    protected int[] nodeMove;
+    protected int[] nodeFirstChild;
+    protected int[] nodeChildrenCount;
+    protected int[] nodeVisits;
+    // points of the player that made the move of the node
+    protected int[] nodePoints;
+    protected float[] nodePrior;
+    protected byte[] nodeTerminal;
+    protected int nodesCount;
+    protected int rootPlayer;
+    // nodes of the path of the current iteration
+    protected int[] path;
+    protected int pathLength;
+
+    // array board of the playouts: owner of each cell, and the free cells as a set with O(1) remove and LIFO restore
+    protected int[] cells;
+    protected int[] freeCells;
+    protected int[] freePositions;
+    protected int freeCount;
+    protected int[] cellRow;
+    protected int[] cellColumn;
+    // moves played on the array board by the current iteration
+    protected int[] playedMoves;
+    protected int playedCount;
+    // sort buffer of the children: priority in the high bits, cell index in the low bits
+    protected long[] childrenBuffer;
+    protected long randomState;
+
+    // stats
+    protected long playouts;
+    protected long playoutsTime;
+
+    public MonteCarloTreeSearchMoveStrategy() {
+        super();
+    }
+
+    @Override
+    public void init(int M, int N, int K, boolean first, int timeout_in_secs) {
+        super.init(M, N, K, first, timeout_in_secs);
+
+        nodeMove = new int[MCTS_MAX_NODES];
+        nodeFirstChild = new int[MCTS_MAX_NODES];
+        nodeChildrenCount = new int[MCTS_MAX_NODES];
+        nodeVisits = new int[MCTS_MAX_NODES];
+        nodePoints = new int[MCTS_MAX_NODES];
+        nodePrior = new float[MCTS_MAX_NODES];
+        nodeTerminal = new byte[MCTS_MAX_NODES];
+        path = new int[M*N + 1];
+
+        cells = new int[M*N];
+        freeCells = new int[M*N];
+        freePositions = new int[M*N];
+        cellRow = new int[M*N];
+        cellColumn = new int[M*N];
+        for (int i = 0; i < M; i++) {
+            for (int j = 0; j < N; j++) {
+                cellRow[i*N + j] = i;
+                cellColumn[i*N + j] = j;
+            }
+        }
+        playedMoves = new int[M*N];
+        childrenBuffer = new long[M*N];
+        randomState = System.nanoTime() | 1;
+    }
+
+    /**
+     * Search the best next move: a forced win if found by {@link #searchForcedWin()}, otherwise the most visited child of the root
+     * after running the Monte Carlo Tree Search up to the expected end time
+     * @return the next best move for a player using this strategy
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O( I * (d * C + P * K) )</code> where I is the count of iterations, d the depth of the tree, C = {@link #MCTS_MAX_CHILDREN}
+     *      and P the length of a playout, plus <code>T({@link #expand})</code> for each expansion</li>
+     *      <li>Space: <code>O( {@link #MCTS_MAX_NODES} + M*N )</code></li>
+     * </ul>
+     */
+    @Override
+    public MNKCell search() {
+        if( round == 0 ) {
+            lastResult = strategyAsFirst();
+            endTime = System.currentTimeMillis();
+            return lastResult.move;
+        }
+
+        // set in invalid state, because if running out time, this function may be terminated
+        invalidateState();
+        lastResult = searchForcedWin();
+        if( lastResult == null ) {
+            loadArrayBoard();
+            nodesCount = 1;
+            nodeMove[ROOT] = -1;
+            nodeChildrenCount[ROOT] = 0;
+            nodeVisits[ROOT] = 0;
+            nodePoints[ROOT] = 0;
+            nodeTerminal[ROOT] = NOT_TERMINAL;
+            rootPlayer = currentBoard.currentPlayer();
+
+            playouts = 0;
+            long playoutsStartTime = System.currentTimeMillis();
+            do {
+                iterate();
+                playouts++;
+            } while (System.currentTimeMillis() < expectedEndTime);
+            playoutsTime = System.currentTimeMillis() - playoutsStartTime;
+
+            lastResult = getRootOutcome();
+        }
+        setInValidState();
+        endTime = System.currentTimeMillis();
+        return lastResult.move;
+    }
+
+    /**
+     * @return the outcome of the most visited child of the root
+     */
+    protected AlphaBetaOutcome getRootOutcome() {
+        int best = -1;
+        for (int child = nodeFirstChild[ROOT]; child < nodeFirstChild[ROOT] + nodeChildrenCount[ROOT]; child++) {
+            // a winning move is always the best
+            if( nodeTerminal[child] == WIN_TERMINAL ) {
+                best = child;
+                break;
+            }
+            if( best < 0 || nodeVisits[child] > nodeVisits[best] )
+                best = child;
+        }
+
+        AlphaBetaOutcome outcome = new AlphaBetaOutcome();
+        outcome.move = best >= 0 ? cellsByIndex[nodeMove[best]] : threatDetectionLogic.getFree().peek();
+        outcome.state = MNKGameState.OPEN;
+        outcome.depth = getSimulatedRound() + 1;
+        // win rate in thousandths
+        outcome.eval = best >= 0 && nodeVisits[best] > 0 ? (int) (1000L * nodePoints[best] / (WIN_POINTS * (long) nodeVisits[best])) : 0;
+        return outcome;
+    }
+
+    /**
+     * Run an iteration of the search: select a leaf from the root, expand it if visited enough, play a playout from it,
+     * and back propagate the result on its path
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O( d * C + P * K )</code>, plus <code>T({@link #expand})</code> if a leaf is expanded</li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    protected void iterate() {
+        int node = ROOT;
+        int player = rootPlayer;
+        path[0] = ROOT;
+        pathLength = 1;
+
+        // selection and expansion
+        while (nodeTerminal[node] == NOT_TERMINAL) {
+            if( nodeChildrenCount[node] == 0 ) {
+                if( node != ROOT && nodeVisits[node] < MCTS_EXPANSION_VISITS )
+                    break;
+                if( !expand(node, player) )
+                    break;
+            }
+            node = select(node);
+            playMove(nodeMove[node], player);
+            player = 1 - player;
+            path[pathLength++] = node;
+        }
+
+        // points of the player that made the move of the node
+        int points;
+        if( nodeTerminal[node] == WIN_TERMINAL )
+            points = WIN_POINTS;
+        else if( nodeTerminal[node] == DRAW_TERMINAL )
+            points = DRAW_POINTS;
+        else
+            points = WIN_POINTS - playout(player);
+
+        while (playedCount > 0)
+            undoMove();
+
+        // back propagation, alternating the points of the players
+        for (int p = pathLength - 1; p >= 0; p--) {
+            node = path[p];
+            nodeVisits[node]++;
+            nodePoints[node] += points;
+            points = WIN_POINTS - points;
+        }
+    }
+
+    /**
+     * Select the child of the node with the highest UCT value, biased by its prior
+     * @return the index of the selected child
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(C)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    protected int select(int node) {
+        final int first = nodeFirstChild[node], last = first + nodeChildrenCount[node];
+        final float logVisits = (float) Math.log(nodeVisits[node] + 1);
+        int best = first;
+        float bestValue = Float.NEGATIVE_INFINITY;
+        for (int child = first; child < last; child++) {
+            int visits = nodeVisits[child];
+            float winRate = visits > 0 ? nodePoints[child] / (float) (WIN_POINTS * visits) : MCTS_FIRST_PLAY_URGENCY;
+            float value = winRate
+                    + MCTS_EXPLORATION * (float) Math.sqrt(logVisits / (visits + 1))
+                    + MCTS_PRIOR_WEIGHT * nodePrior[child] / (visits + 1);
+            if( value > bestValue ) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Add the children of the node, the free cells of highest threat priority in the node's state.
+     * The path of the node is marked on the threat detection logic, and unmarked after reading the priorities
+     * @param node the leaf to expand, whose path is in {@link #path} and on the array board
+     * @param player index of the player to move in the node
+     * @return false if the tree is full, true otherwise
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O( d * T(u) + M*N * log(M*N) )</code> where T(u) is the cost of {@link #mark} and {@link #unMark}</li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    protected boolean expand(int node, int player) {
+        final int N = currentBoard.N;
+        final int count = Math.min(freeCount, Math.max(1, MCTS_MAX_CHILDREN));
+        if( nodesCount + count > nodeMove.length )
+            return false;
+
+        for (int p = 1; p < pathLength; p++)
+            mark(cellsByIndex[nodeMove[path[p]]]);
+
+        final PriorityQueue<MNKCell> free = threatDetectionLogic.getFree();
+        final int[][] priorities = threatDetectionLogic.freeCellsPrioritiesCache;
+        int freeCellsCount = 0;
+        for (MNKCell cell : free)
+            childrenBuffer[freeCellsCount++] = ((long) priorities[cell.i][cell.j] << 32) | (cell.i * N + cell.j);
+
+        for (int p = 1; p < pathLength; p++)
+            unMark();
+
+        // the highest priorities are at the end
+        Arrays.sort(childrenBuffer, 0, freeCellsCount);
+        final long maxPriority = Math.max(1, childrenBuffer[freeCellsCount - 1] >>> 32);
+        final int first = nodesCount;
+        for (int c = 0; c < count; c++) {
+            long entry = childrenBuffer[freeCellsCount - 1 - c];
+            int child = first + c;
+            int move = (int) entry;
+            nodeMove[child] = move;
+            nodeFirstChild[child] = 0;
+            nodeChildrenCount[child] = 0;
+            nodeVisits[child] = 0;
+            nodePoints[child] = 0;
+            nodePrior[child] = (entry >>> 32) / (float) maxPriority;
+            if( isWinningMove(move, player) )
+                nodeTerminal[child] = WIN_TERMINAL;
+            else if( freeCount == 1 )
+                nodeTerminal[child] = DRAW_TERMINAL;
+            else
+                nodeTerminal[child] = NOT_TERMINAL;
+        }
+        nodesCount += count;
+        nodeFirstChild[node] = first;
+        nodeChildrenCount[node] = count;
+        return true;
+    }
+
+    /**
+     * Play random moves on the array board until the end of the game
+     * @param player index of the player to move
+     * @return the points of the player to move
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O( M*N * K )</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    protected int playout(int player) {
+        int mover = player;
+        while (freeCount > 0) {
+            int move = freeCells[nextRandom(freeCount)];
+            boolean isWin = isWinningMove(move, mover);
+            playMove(move, mover);
+            if( isWin )
+                return mover == player ? WIN_POINTS : 0;
+            mover = 1 - mover;
+        }
+        return DRAW_POINTS;
+    }
+
+    /**
+     * @param move a free cell of the array board
+     * @param player index of the player
+     * @return true if the move makes a line of K of the player on the array board
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(K)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    protected boolean isWinningMove(int move, int player) {
+        final int M = currentBoard.M, N = currentBoard.N, K = currentBoard.K;
+        final int i = cellRow[move], j = cellColumn[move];
+        for (int directionType : Utils.DIRECTIONS) {
+            int length = 1;
+            for (int[] offset : Utils.DIRECTIONS_OFFSETS[directionType]) {
+                int di = offset[0], dj = offset[1];
+                int ci = i + di, cj = j + dj;
+                while (length < K && ci >= 0 && ci < M && cj >= 0 && cj < N && cells[ci*N + cj] == player) {
+                    length++;
+                    ci += di;
+                    cj += dj;
+                }
+            }
+            if( length >= K )
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Load the array board from the tracking board
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(M*N)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    protected void loadArrayBoard() {
+        final MNKCellState[][] states = currentBoard.states();
+        final int N = currentBoard.N;
+        freeCount = 0;
+        playedCount = 0;
+        for (int cell = 0; cell < cells.length; cell++) {
+            MNKCellState state = states[cell / N][cell % N];
+            if( state == MNKCellState.FREE ) {
+                cells[cell] = FREE;
+                freePositions[cell] = freeCount;
+                freeCells[freeCount++] = cell;
+            }
+            else {
+                cells[cell] = Utils.getPlayerIndex(state);
+            }
+        }
+    }
+
+    /**
+     * Mark the move on the array board, moving it at the end of the free cells, so {@link #undoMove()} restores it by a counter
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(1)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    protected void playMove(int move, int player) {
+        int position = freePositions[move];
+        int lastFree = freeCells[freeCount - 1];
+        freeCells[position] = lastFree;
+        freePositions[lastFree] = position;
+        freeCells[freeCount - 1] = move;
+        freePositions[move] = freeCount - 1;
+        freeCount--;
+        cells[move] = player;
+        playedMoves[playedCount++] = move;
+    }
+
+    /**
+     * Unmark the last move played on the array board
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(1)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    protected void undoMove() {
+        int move = playedMoves[--playedCount];
+        cells[move] = FREE;
+        freeCount++;
+    }
+
+    /**
+     * @param bound the exclusive upper bound
+     * @return a pseudo random number in [0, bound), by a xorshift generator
+     */
+    protected int nextRandom(int bound) {
+        randomState ^= randomState << 13;
+        randomState ^= randomState >>> 7;
+        randomState ^= randomState << 17;
+        return (int) ((randomState >>> 33) % bound);
+    }
+
+    /**
+     * @return the count of playouts of the last search
+     */
+    public long getPlayouts() {
+        return playouts;
+    }
+
+    /**
+     * @return the count of playouts per second of the last search
+     */
+    public long getPlayoutsPerSecond() {
+        return playouts * 1000 / Math.max(1, playoutsTime);
+    }
+
+    @Override
+    protected void printStats(AlphaBetaOutcome outcome) {
+        super.printStats(outcome);
+        Debug.println("MCTS: " + playouts + " playouts in " + playoutsTime + " ms, "
+                + getPlayoutsPerSecond() + " playouts/s, " + nodesCount + " nodes");
+    }
+}
@@ -0,0 +1,144 @@
+package player;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Transposition table stored off heap in direct {@link ByteBuffer}s, so its size doesn't affect the garbage collector
+ * and the table can be larger than the heap.
+ * The slots are split in chunks of up to 2^25 slots, as a single buffer can't address more than 2GB.
+ * Each slot is stored as <code>key | value | move | padding [ | verification key ]</code>,
+ * see {@link AbstractTranspositionTable} for the content of the fields.
+ *
+ * The memory is released explicitly by {@link #free()}, without waiting the garbage collection of the buffers.
+ */
+public class OffHeapTranspositionTable extends AbstractTranspositionTable {
+
+    protected static final int KEY_OFFSET = 0;
+    protected static final int VALUE_OFFSET = 8;
+    protected static final int MOVE_OFFSET = 16;
+    protected static final int VERIFICATION_KEY_OFFSET = 24;
+    protected static final int CHUNK_SHIFT = 25;
+    protected static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    // Used to release the direct buffers memory through sun.misc.Unsafe#invokeCleaner, if available
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            // the buffers will be released on their garbage collection
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    protected final int slotSize;
+    protected ByteBuffer[] chunks;
+
+    /**
+     * @param sizeInBytes max memory in bytes used by the table
+     * @param useVerificationKey if true then also stores and checks the verification key of {@link ZobristHashableBoardState}
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(S)</code> where S is the slots count</li>
+     *      <li>Space: <code>O(S)</code> off heap</li>
+     * </ul>
+     */
+    public OffHeapTranspositionTable(long sizeInBytes, boolean useVerificationKey) {
+        super(sizeInBytes, useVerificationKey ? 32 : 24, 1L << 30, useVerificationKey);
+        slotSize = useVerificationKey ? 32 : 24;
+
+        int slotsPerChunk = Math.min(capacity, 1 << CHUNK_SHIFT);
+        chunks = new ByteBuffer[ capacity / slotsPerChunk ];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = ByteBuffer.allocateDirect(slotsPerChunk * slotSize).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    protected ByteBuffer chunkOf(int slot) {
+        return chunks[slot >>> CHUNK_SHIFT];
+    }
+
+    protected int offsetOf(int slot) {
+        return (slot & CHUNK_MASK) * slotSize;
+    }
+
+    @Override
+    protected long getKeyAt(int slot) {
+        return chunkOf(slot).getLong(offsetOf(slot) + KEY_OFFSET);
+    }
+
+    @Override
+    protected long getVerificationKeyAt(int slot) {
+        return useVerificationKey ? chunkOf(slot).getLong(offsetOf(slot) + VERIFICATION_KEY_OFFSET) : 0L;
+    }
+
+    @Override
+    protected long getValueAt(int slot) {
+        return chunkOf(slot).getLong(offsetOf(slot) + VALUE_OFFSET);
+    }
+
+    @Override
+    protected int getMoveAt(int slot) {
+        return chunkOf(slot).getInt(offsetOf(slot) + MOVE_OFFSET);
+    }
+
+    @Override
+    protected void setSlot(int slot, long key, long verificationKey, long value, int move) {
+        ByteBuffer chunk = chunkOf(slot);
+        int offset = offsetOf(slot);
+        chunk.putLong(offset + KEY_OFFSET, key);
+        chunk.putLong(offset + VALUE_OFFSET, value);
+        chunk.putInt(offset + MOVE_OFFSET, move);
+        if( useVerificationKey )
+            chunk.putLong(offset + VERIFICATION_KEY_OFFSET, verificationKey);
+    }
+
+    /**
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(S)</code> where S is the slots count</li>
+     * </ul>
+     */
+    @Override
+    public void clear() {
+        for (ByteBuffer chunk : chunks) {
+            for (int offset = VALUE_OFFSET; offset < chunk.capacity(); offset += slotSize) {
+                chunk.putLong(offset, 0L);
+            }
+        }
+        usedSlots = 0;
+    }
+
+    /**
+     * Release the off heap memory of the buffers.
+     * @PostCondition The table can't be used anymore, as its buffers are unreachable
+     */
+    @Override
+    public void free() {
+        if( chunks == null )
+            return;
+        ByteBuffer[] released = chunks;
+        chunks = null;
+        if( INVOKE_CLEANER != null ) {
+            for (ByteBuffer chunk : released) {
+                try {
+                    INVOKE_CLEANER.invoke(UNSAFE, chunk);
+                }
+                catch (ReflectiveOperationException e) {
+                    // the buffer will be released on its garbage collection
+                }
+            }
+        }
+    }
+}
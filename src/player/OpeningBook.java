@@ -0,0 +1,135 @@
+package player;
+
+import mnkgame.MNKCell;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only opening book for a (M,N,K) configuration, memory mapped from a file generated by {@link OpeningBookGenerator}.
+ * The book maps the canonical zobrist keys of the positions (see {@link ZobristHashableBoardState}) to the best move
+ * found by a deep search, so a book position is answered with a binary search over the mapped entries.
+ *
+ * File format (big endian):
+ * <pre>
+ * header:  magic (int) | version (int) | M (int) | N (int) | K (int) | entries count (int)
+ * entries: canonical key (long) | canonical verification key (long) | canonical best move index (int)
+ * </pre>
+ * where entries are sorted by key, then by verification key.
+ */
+public class OpeningBook {
+
+    public static final int MAGIC = 0x4D4E4B42; // "MNKB"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 6 * Integer.BYTES;
+    public static final int ENTRY_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES;
+
+    protected final MappedByteBuffer buffer;
+    protected final int entriesCount;
+    protected final int M, N;
+    protected final ZobristHashableBoardState state;
+
+    protected OpeningBook(MappedByteBuffer buffer, int M, int N, int entriesCount) {
+        this.buffer = buffer;
+        this.M = M;
+        this.N = N;
+        this.entriesCount = entriesCount;
+        this.state = new ZobristHashableBoardState(M, N, true, true);
+    }
+
+    /**
+     * @param M Board rows
+     * @param N Board columns
+     * @param K Number of symbols to be aligned
+     * @return the name of the book file for the configuration
+     */
+    public static String getFileName(int M, int N, int K) {
+        return "mnk-" + M + "-" + N + "-" + K + ".book";
+    }
+
+    /**
+     * Memory map the book of the configuration, from the provided directory
+     * @param directory the directory that contains the books
+     * @param M Board rows
+     * @param N Board columns
+     * @param K Number of symbols to be aligned
+     * @return the book, or null if there isn't a valid book for the configuration
+     */
+    public static OpeningBook load(String directory, int M, int N, int K) {
+        File file = new File(directory, getFileName(M, N, K));
+        if( !file.isFile() )
+            return null;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if( buffer.capacity() < HEADER_SIZE
+                || buffer.getInt(0) != MAGIC
+                || buffer.getInt(4) != VERSION
+                || buffer.getInt(8) != M
+                || buffer.getInt(12) != N
+                || buffer.getInt(16) != K ) {
+                return null;
+            }
+            int entriesCount = buffer.getInt(20);
+            if( buffer.capacity() < HEADER_SIZE + (long) entriesCount * ENTRY_SIZE )
+                return null;
+            return new OpeningBook(buffer, M, N, entriesCount);
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    public int size() {
+        return entriesCount;
+    }
+
+    /**
+     * Search the book move of the position reached by the provided marked cells
+     * @param MC marked cells, ordered by move
+     * @return the book move, or null if the position isn't in the book
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O( |MC| + log(E) )</code> where E is the count of book entries</li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    public MNKCell lookup(MNKCell[] MC) {
+        for (int m = 0; m < MC.length; m++)
+            state.toggle(m % 2, MC[m].i * N + MC[m].j);
+
+        MNKCell move = null;
+        int entry = find(state.getCanonicalKey(), state.getCanonicalVerificationKey());
+        if( entry >= 0 ) {
+            int cellIndex = state.fromCanonicalCell(buffer.getInt(HEADER_SIZE + entry * ENTRY_SIZE + 2 * Long.BYTES));
+            move = new MNKCell(cellIndex / N, cellIndex % N);
+        }
+
+        for (int m = MC.length - 1; m >= 0; m--)
+            state.toggle(m % 2, MC[m].i * N + MC[m].j);
+        return move;
+    }
+
+    protected int find(long key, long verificationKey) {
+        int low = 0, high = entriesCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int offset = HEADER_SIZE + mid * ENTRY_SIZE;
+            int cmp = Long.compare(buffer.getLong(offset), key);
+            if( cmp == 0 )
+                cmp = Long.compare(buffer.getLong(offset + Long.BYTES), verificationKey);
+
+            if( cmp < 0 )
+                low = mid + 1;
+            else if( cmp > 0 )
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+}
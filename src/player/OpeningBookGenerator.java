@@ -0,0 +1,154 @@
+package player;
+
+import mnkgame.MNKBoard;
+import mnkgame.MNKCell;
+import mnkgame.MNKGameState;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Offline generator of the {@link OpeningBook} of a (M,N,K) configuration.
+ * Each position of the first plies (up to symmetries) is searched by a {@link TranspositionSearchMoveStrategy}
+ * with a long timeout, and its best move is written in the book.
+ *
+ * Usage, in the src/ directory:
+ * <pre>java -cp ".." player.OpeningBookGenerator M N K [plies] [seconds per position] [output directory]</pre>
+ */
+public class OpeningBookGenerator {
+
+    protected final int M, N, K;
+    protected final int plies;
+    protected final int secondsPerPosition;
+
+    protected final MNKBoard board;
+    protected final ZobristHashableBoardState state;
+    protected final HashSet<Long> visited;
+    protected final List<long[]> entries;
+
+    /**
+     * @param M Board rows
+     * @param N Board columns
+     * @param K Number of symbols to be aligned
+     * @param plies the book contains all positions with less than plies marked cells
+     * @param secondsPerPosition the timeout of the search of each position
+     */
+    public OpeningBookGenerator(int M, int N, int K, int plies, int secondsPerPosition) {
+        this.M = M;
+        this.N = N;
+        this.K = K;
+        this.plies = plies;
+        this.secondsPerPosition = secondsPerPosition;
+        board = new MNKBoard(M, N, K);
+        state = new ZobristHashableBoardState(M, N, true, true);
+        visited = new HashSet<>();
+        entries = new ArrayList<>();
+    }
+
+    /**
+     * Search all positions with less than {@link #plies} marked cells, visiting once the symmetric ones
+     */
+    public void generate() {
+        visit();
+    }
+
+    protected void visit() {
+        int marked = board.getMarkedCells().length;
+        if( marked >= plies || board.gameState() != MNKGameState.OPEN || !visited.add(state.getCanonicalKey()) )
+            return;
+
+        MNKCell move = searchBestMove(board.getFreeCells(), board.getMarkedCells());
+        entries.add(new long[]{
+                state.getCanonicalKey(),
+                state.getCanonicalVerificationKey(),
+                state.toCanonicalCell(move.i * N + move.j)
+        });
+        System.out.println("Position " + entries.size() + " at ply " + marked + ": " + move);
+
+        for (MNKCell cell : board.getFreeCells()) {
+            int playerIndex = board.currentPlayer();
+            board.markCell(cell.i, cell.j);
+            state.toggle(playerIndex, cell.i * N + cell.j);
+            visit();
+            state.toggle(playerIndex, cell.i * N + cell.j);
+            board.unmarkCell();
+        }
+    }
+
+    protected MNKCell searchBestMove(MNKCell[] FC, MNKCell[] MC) {
+        TranspositionSearchMoveStrategy strategy = new TranspositionSearchMoveStrategy() {
+            @Override
+            protected AlphaBetaOutcome strategyAsFirst() {
+                // search also the first move, instead of the default one
+                return iterativeDeepening(
+                        true,
+                        STANDARD_SCORES.get(STATE_LOSE),
+                        STANDARD_SCORES.get(STATE_WIN),
+                        this.maxDepthSearch
+                );
+            }
+        };
+        strategy.USE_OPENING_BOOK = false;
+        strategy.init(M, N, K, MC.length % 2 == 0, secondsPerPosition);
+        strategy.initSearch(FC, MC);
+        MNKCell move = strategy.search();
+        strategy.postSearch();
+        strategy.release();
+        return move;
+    }
+
+    /**
+     * Write the book sorted by keys
+     * @param directory the output directory
+     * @return the book file
+     * @throws IOException if the book can't be written
+     */
+    public File write(String directory) throws IOException {
+        entries.sort((e1, e2) -> {
+            int cmp = Long.compare(e1[0], e2[0]);
+            return cmp != 0 ? cmp : Long.compare(e1[1], e2[1]);
+        });
+
+        File file = new File(directory, OpeningBook.getFileName(M, N, K));
+        if( file.getParentFile() != null )
+            file.getParentFile().mkdirs();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeInt(M);
+            out.writeInt(N);
+            out.writeInt(K);
+            out.writeInt(entries.size());
+            for (long[] entry : entries) {
+                out.writeLong(entry[0]);
+                out.writeLong(entry[1]);
+                out.writeInt((int) entry[2]);
+            }
+        }
+        return file;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if( args.length < 3 ) {
+            System.err.println("Usage: OpeningBookGenerator M N K [plies] [seconds per position] [output directory]");
+            System.exit(1);
+        }
+        int M = Integer.parseInt(args[0]);
+        int N = Integer.parseInt(args[1]);
+        int K = Integer.parseInt(args[2]);
+        int plies = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+        String directory = args.length > 5 ? args[5] : TranspositionSearchMoveStrategy.DEFAULT_OPENING_BOOK_DIRECTORY;
+
+        OpeningBookGenerator generator = new OpeningBookGenerator(M, N, K, plies, seconds);
+        generator.generate();
+        File file = generator.write(directory);
+        System.out.println("Written " + generator.entries.size() + " positions to " + file.getPath());
+    }
+}
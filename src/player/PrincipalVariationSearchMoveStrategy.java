@@ -0,0 +1,47 @@
+package player;
+
+/**
+ * This class implements the Principal Variation Search (NegaScout) over {@link TranspositionSearchMoveStrategy}:
+ * as the moves ordering is expected to provide the best move first, only the first child of each node is searched with the full window,
+ * while the other children are searched with a null window that only proves they aren't better than the first one.
+ * A child is searched again with the full window only if it fails high on its null window, as it may be the new best move.
+ *
+ * The null windows searches store their bounds in the transposition table as {@link TranspositionData.ValueType#UPPER_BOUND} or
+ * {@link TranspositionData.ValueType#LOWER_BOUND}, so the re-searches reuse them.
+ */
+public class PrincipalVariationSearchMoveStrategy extends TranspositionSearchMoveStrategy {
+
+    /**
+     * Search the first child with the full window, and the others with a null window,
+     * searching them again with the full window on fail high
+     * @implNote Cost <ul>
+     *      <li>Time: <code>T({@link #alphaBetaPruning})</code> on best case, <code>2 * T({@link #alphaBetaPruning})</code> on worst case</li>
+     * </ul>
+     */
+    @Override
+    protected long searchChild(boolean shouldMaximize, int a, int b, int depth, int depthLeft, long endTime, int moveIndex) {
+        if( moveIndex == 0 || (long) b - a <= 1 )
+            return super.searchChild(shouldMaximize, a, b, depth, depthLeft, endTime, moveIndex);
+
+        long score;
+        if( shouldMaximize ) {
+            score = super.searchChild(true, a, a + 1, depth, depthLeft, endTime, moveIndex);
+            if( isRewinding() )
+                return score;
+            int eval = AlphaBetaOutcome.getEval(score);
+            // fail high, but inside the window: it may be better than the current best
+            if( a < eval && eval < b )
+                score = super.searchChild(true, a, b, depth, depthLeft, endTime, moveIndex);
+        }
+        else {
+            score = super.searchChild(false, b - 1, b, depth, depthLeft, endTime, moveIndex);
+            if( isRewinding() )
+                return score;
+            int eval = AlphaBetaOutcome.getEval(score);
+            // fail low, but inside the window: it may be better than the current best
+            if( a < eval && eval < b )
+                score = super.searchChild(false, a, b, depth, depthLeft, endTime, moveIndex);
+        }
+        return score;
+    }
+}
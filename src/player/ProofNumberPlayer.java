@@ -0,0 +1,48 @@
+package player;
+
+
+import mnkgame.MNKCell;
+import mnkgame.MNKPlayer;
+
+// this class is a wrapper for the proof number search strategy
+public class ProofNumberPlayer implements MNKPlayer {
+
+    SearchMoveStrategy<MNKCell> moveStrategy;
+
+    public ProofNumberPlayer() {}
+
+    @Override
+    public void initPlayer(int M, int N, int K, boolean first, int timeout_in_secs) {
+        // the previous game is ended
+        if( moveStrategy != null )
+            moveStrategy.release();
+        setSearchMoveStrategy(new ProofNumberSearchMoveStrategy());
+
+        moveStrategy.init(M, N, K, first, timeout_in_secs);
+    }
+
+    public void setSearchMoveStrategy(SearchMoveStrategy<MNKCell> moveStrategy) {
+        this.moveStrategy = moveStrategy;
+    }
+
+    @Override
+    public MNKCell selectCell(MNKCell[] FC, MNKCell[] MC) {
+
+        moveStrategy.initSearch(FC, MC);
+        MNKCell move = moveStrategy.search();
+        moveStrategy.postSearch();
+
+        return move;
+    }
+
+    @Override
+    public String playerName() {
+        return "Proof seeker";
+    }
+
+    @Override
+    public int hashCode() {
+        return playerName().hashCode();
+    }
+
+}
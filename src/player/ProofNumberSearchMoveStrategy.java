@@ -0,0 +1,465 @@
+package player;
+
+import mnkgame.MNKCell;
+import mnkgame.MNKGameState;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * This class proves if the player to move has a forced win, with the depth-first proof-number search (df-pn) of
+ * A. Nagai: "Df-pn Algorithm for Searching AND/OR Trees and Its Applications".
+ * The search expands the frontier node that requires the least effort to prove or disprove the root,
+ * so it answers "is this position won?" with far fewer nodes than an alpha beta search of the same depth.
+ * <ul>
+ *     <li>The nodes of the player to move at the root (the attacker) are OR nodes, the nodes of the opponent are AND nodes.
+ *     A draw counts as a disproof, so a proof is always a forced win of the attacker.</li>
+ *     <li>Each node has the proof numbers <code>phi</code> and <code>delta</code> relative to its player to move:
+ *     <code>phi</code> is the least count of leaves to prove a win of the player to move, <code>delta</code> the least count to disprove it.</li>
+ *     <li>The searched path is marked on the {@link EBoardWithGameEnd}, whose end of game is detected by the threat detection logic,
+ *     that also sorts the children by threat priority.
+ *     The children are classified on expansion without marking them, by the counts of marks of each player in each line of K cells:
+ *     a winning move, an immediate win of the player to move after the move, and the end of the free cells are leaves,
+ *     so the moves that don't block an immediate win of the opponent are pruned at once,
+ *     and a node where the attacker can't complete any line is disproven, instead of searching all its draws.</li>
+ *     <li>The proof numbers are stored in a {@link ProofNumberTable} indexed by the canonical zobrist key of the board,
+ *     and it's kept between the rounds while the attacker doesn't change, so the proofs are reused on the next moves.</li>
+ * </ul>
+ * The search stops after {@link #PROOF_NUMBER_MAX_NODES} nodes or at the end time, so it can be used both as a standalone strategy,
+ * that falls back to the {@link ThreatSearchMoveStrategy} search when the win isn't proven, and as an endgame pre-solver, see {@link #searchProof}.
+ */
+public class ProofNumberSearchMoveStrategy extends ThreatSearchMoveStrategy {
+
+    /**
+     * Proof number of a proven (or disproven) node, saturated sums stay at this value
+     */
+    public static final int INFINITY = 1 << 28;
+
+    /**
+     * Max count of nodes expanded by each {@link #searchProof}
+     */
+    public long PROOF_NUMBER_MAX_NODES = 1000000;
+    /**
+     * Max memory in megabytes used by the proof number table
+     */
+    public int PROOF_NUMBER_TABLE_SIZE_MB = 32;
+    /**
+     * Ratio of the search time that the standalone {@link #search()} spends to prove a win, before falling back to the alpha beta search
+     */
+    public float PROOF_NUMBER_TIME_RATIO = 0.5f;
+
+    protected ZobristHashableBoardState currentState;
+    protected Utils.MatrixRowMap matrixMap;
+    protected ProofNumberTable proofNumberTable;
+    // children of the node expanded at each ply, and their proof numbers relative to the player to move after the child move
+    protected MNKCell[][] childrenMoves;
+    protected int[][] childrenPhi;
+    protected int[][] childrenDelta;
+    protected int[] childrenCount;
+    // lines of K cells, and count of the marks of each player in each line
+    protected int[][] windows;
+    protected int[][] cellWindows;
+    protected int[][] windowMarks;
+    // liveWindows[player] = count of the lines without marks of the other player
+    protected int[] liveWindows;
+    // fourWindows[player] = count of the lines with K-1 marks of the player and none of the other player
+    protected int[] fourWindows;
+    // proof numbers of the last node searched by {@link #mid}, or evaluated by {@link #evaluateChild}
+    protected int resultPhi, resultDelta;
+    protected int attacker;
+    protected long nodes, maxNodes, proofEndTime;
+    protected boolean isAborted;
+
+    public ProofNumberSearchMoveStrategy() {
+        super();
+        // this is the solver, so it doesn't pre-solve with another instance
+        ENDGAME_SOLVER_FREE_CELLS = 0;
+    }
+
+    @Override
+    public void init(int M, int N, int K, boolean first, int timeout_in_secs) {
+        super.init(M, N, K, first, timeout_in_secs);
+
+        matrixMap = new Utils.MatrixRowMap(M, N);
+        currentState = new ZobristHashableBoardState(M, N, false, true);
+        // allocated by the first proof, as a pre-solver may never be used
+        proofNumberTable = null;
+        childrenMoves = new MNKCell[M*N + 1][];
+        childrenPhi = new int[M*N + 1][];
+        childrenDelta = new int[M*N + 1][];
+        childrenCount = new int[M*N + 1];
+        windows = ThreatSpaceSearch.newWindows(M, N, K);
+        cellWindows = ThreatSpaceSearch.newCellWindows(windows, M*N);
+        windowMarks = new int[2][windows.length];
+        liveWindows = new int[]{ windows.length, windows.length };
+        fourWindows = new int[2];
+    }
+
+    /**
+     * Release the proof number table
+     */
+    @Override
+    public void release() {
+        proofNumberTable = null;
+        super.release();
+    }
+
+    /**
+     * Search the best next move: a move of a proven win if the proof is found
+     * within {@link #PROOF_NUMBER_TIME_RATIO} of the search time, otherwise the move of the {@link ThreatSearchMoveStrategy} search
+     * @return the next best move for a player using this strategy
+     */
+    @Override
+    public MNKCell search() {
+        if( round > 0 ) {
+            invalidateState();
+            long endTime = startTime + (long) ((expectedEndTime - startTime) * PROOF_NUMBER_TIME_RATIO);
+            AlphaBetaOutcome outcome = searchProof(endTime);
+            setInValidState();
+            if( outcome != null ) {
+                lastResult = outcome;
+                return lastResult.move;
+            }
+        }
+        return super.search();
+    }
+
+    /**
+     * Prove a forced win of the player to move in the current position
+     * @param endTime the time the search stops at, if the win isn't proven yet
+     * @return the outcome of a winning move, or null if the win is disproven, or the search stopped before the proof
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O( {@link #PROOF_NUMBER_MAX_NODES} * M*N * T(u) )</code> where T(u) is the cost of {@link #mark} and {@link #unMark}</li>
+     *      <li>Space: <code>O( (M*N)^2 + {@link #PROOF_NUMBER_TABLE_SIZE_MB} )</code></li>
+     * </ul>
+     */
+    public AlphaBetaOutcome searchProof(long endTime) {
+        if( currentBoard.gameState() != MNKGameState.OPEN )
+            return null;
+
+        if( proofNumberTable == null )
+            proofNumberTable = new ProofNumberTable(PROOF_NUMBER_TABLE_SIZE_MB);
+        // the proof numbers are relative to the attacker's win, so they are valid only for the same attacker
+        if( attacker != currentBoard.currentPlayer() ) {
+            attacker = currentBoard.currentPlayer();
+            proofNumberTable.clear();
+        }
+        nodes = 0;
+        maxNodes = PROOF_NUMBER_MAX_NODES;
+        proofEndTime = endTime;
+        isAborted = false;
+        resultPhi = resultDelta = 1;
+
+        mid(INFINITY, INFINITY);
+
+        if( DEBUG_SHOW_INFO )
+            Debug.println("Proof number search: " + nodes + " nodes"
+                    + (isAborted ? ", aborted" : "")
+                    + ", root phi " + resultPhi + " delta " + resultDelta);
+        if( resultPhi != 0 )
+            return null;
+
+        // the winning move leads to a node where the opponent is disproven
+        int ply = getSimulatedRound();
+        for (int c = 0; c < childrenCount[ply]; c++) {
+            if( childrenDelta[ply][c] == 0 ) {
+                AlphaBetaOutcome outcome = toSolvedOutcome(SolvedPositionDatabase.WIN, currentBoard.getFreeCellsCount(), attacker);
+                outcome.move = childrenMoves[ply][c];
+                return outcome;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the count of nodes expanded by the last {@link #searchProof}
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return true if the last {@link #searchProof} stopped for the nodes budget or the time, before solving the position
+     */
+    public boolean isAborted() {
+        return isAborted;
+    }
+
+    /**
+     * Multiple iterative deepening of df-pn: search the current node until its proof numbers reach one of the thresholds,
+     * then store them in {@link #proofNumberTable} and in {@link #resultPhi} and {@link #resultDelta}
+     * @param thresholdPhi threshold of phi of the player to move
+     * @param thresholdDelta threshold of delta of the player to move
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O( n * M*N * T(u) )</code> where n is the count of the expanded nodes</li>
+     *      <li>Space: <code>O( (M*N)^2 )</code></li>
+     * </ul>
+     */
+    protected void mid(int thresholdPhi, int thresholdDelta) {
+        ++nodes;
+        if( nodes >= maxNodes || System.currentTimeMillis() >= proofEndTime )
+            isAborted = true;
+        if( isAborted )
+            return;
+
+        final int ply = getSimulatedRound();
+        final int count = expand(ply);
+        final MNKCell[] moves = childrenMoves[ply];
+        final int[] phis = childrenPhi[ply];
+        final int[] deltas = childrenDelta[ply];
+        final long key = currentState.getCanonicalKey();
+
+        while (true) {
+            // phi is the min delta of the children, delta is the sum of their phi
+            int phi = INFINITY, secondPhi = INFINITY, delta = 0, best = -1;
+            for (int c = 0; c < count; c++) {
+                if( deltas[c] < phi ) {
+                    secondPhi = phi;
+                    phi = deltas[c];
+                    best = c;
+                }
+                else if( deltas[c] < secondPhi ) {
+                    secondPhi = deltas[c];
+                }
+                delta = Math.min(INFINITY, delta + phis[c]);
+            }
+
+            if( phi >= thresholdPhi || delta >= thresholdDelta || isAborted ) {
+                proofNumberTable.store(key, phi, delta);
+                resultPhi = phi;
+                resultDelta = delta;
+                return;
+            }
+
+            // the child is searched until it's no more the most proving child, or the node reaches its delta threshold
+            int childThresholdPhi = Math.min(INFINITY, thresholdDelta - delta + phis[best]);
+            int childThresholdDelta = Math.min(thresholdPhi, secondPhi + 1);
+            mark(moves[best]);
+            mid(childThresholdPhi, Math.min(INFINITY, childThresholdDelta));
+            unMark();
+            if( !isAborted ) {
+                phis[best] = resultPhi;
+                deltas[best] = resultDelta;
+            }
+        }
+    }
+
+    /**
+     * Collect the children of the current node, sorted by threat priority, with their proof numbers,
+     * loaded from {@link #proofNumberTable} or evaluated by {@link #evaluateChild}
+     * @param ply count of the marked cells of the node
+     * @return the count of the children
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O( M*N * (K + log(M*N)) )</code></li>
+     *      <li>Space: <code>O( M*N )</code></li>
+     * </ul>
+     */
+    protected int expand(int ply) {
+        final PriorityQueue<MNKCell> free = threatDetectionLogic.getFree();
+        if( childrenMoves[ply] == null ) {
+            int capacity = currentBoard.M * currentBoard.N;
+            childrenMoves[ply] = new MNKCell[capacity];
+            childrenPhi[ply] = new int[capacity];
+            childrenDelta[ply] = new int[capacity];
+        }
+        final MNKCell[] moves = childrenMoves[ply];
+        final int[] phis = childrenPhi[ply];
+        final int[] deltas = childrenDelta[ply];
+
+        int count = 0;
+        for (MNKCell cell : free)
+            moves[count++] = cell;
+        // the most threatening children first, so they win the ties of the proof numbers
+        Arrays.sort(moves, 0, count, free.comparator());
+
+        final int player = currentBoard.currentPlayer();
+        for (int c = 0; c < count; c++) {
+            int cellIndex = matrixMap.getArrayIndexFromMatrixIndexes(moves[c].i, moves[c].j);
+            currentState.toggle(player, cellIndex);
+            int slot = proofNumberTable.probe(currentState.getCanonicalKey());
+            currentState.toggle(player, cellIndex);
+
+            if( slot >= 0 ) {
+                phis[c] = proofNumberTable.getPhi(slot);
+                deltas[c] = proofNumberTable.getDelta(slot);
+            }
+            else {
+                evaluateChild(cellIndex, player);
+                phis[c] = resultPhi;
+                deltas[c] = resultDelta;
+            }
+        }
+        childrenCount[ply] = count;
+        return count;
+    }
+
+    /**
+     * Evaluate the proof numbers of the child reached by the move, relative to the player to move after it, into {@link #resultPhi} and {@link #resultDelta}.
+     * The child isn't marked: its end of game and the immediate wins of its player to move are found by the lines counters of the current node
+     * @param cellIndex array index of the move
+     * @param player index of the player to move in the current node
+     * @return true if the child is solved, false if it has to be expanded
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(K)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    protected boolean evaluateChild(int cellIndex, int player) {
+        final int K = currentBoard.K;
+        final int opponent = 1 - player;
+        boolean isWinningMove = false;
+        int blockedFours = 0, blockedWindows = 0;
+        for (int window : cellWindows[cellIndex]) {
+            int playerMarks = windowMarks[player][window], opponentMarks = windowMarks[opponent][window];
+            if( opponentMarks == 0 && playerMarks == K - 1 )
+                isWinningMove = true;
+            if( playerMarks == 0 ) {
+                blockedWindows++;
+                if( opponentMarks == K - 1 )
+                    blockedFours++;
+            }
+        }
+
+        // relative to the opponent, that is the player to move in the child
+        boolean isLost = isWinningMove;
+        boolean isWon = false;
+        if( !isLost ) {
+            int attackerLiveWindows = liveWindows[attacker] - (opponent == attacker ? blockedWindows : 0);
+            if( fourWindows[opponent] > blockedFours )
+                isWon = true;
+            // a draw, or the attacker can't complete any line
+            else if( currentBoard.getFreeCellsCount() == 1 || attackerLiveWindows == 0 ) {
+                isLost = opponent == attacker;
+                isWon = opponent != attacker;
+            }
+        }
+
+        if( isLost ) {
+            resultPhi = INFINITY;
+            resultDelta = 0;
+        }
+        else if( isWon ) {
+            resultPhi = 0;
+            resultDelta = INFINITY;
+        }
+        else {
+            resultPhi = 1;
+            resultDelta = 1;
+        }
+        return isLost || isWon;
+    }
+
+    /**
+     * Mark the move, and update the zobrist key and the lines count
+     * @implNote Cost <code>T(u) = T({@link ThreatSearchMoveStrategy#mark}) + O(K)</code>
+     */
+    @Override
+    public void mark(MNKCell marked) {
+        int markingPlayer = currentBoard.currentPlayer();
+        int cellIndex = matrixMap.getArrayIndexFromMatrixIndexes(marked.i, marked.j);
+        currentState.toggle(markingPlayer, cellIndex);
+        for (int window : cellWindows[cellIndex])
+            updateWindow(window, markingPlayer, 1);
+        super.mark(marked);
+    }
+
+    /**
+     * Unmark the last move, and update the zobrist key and the lines count
+     * @implNote Cost <code>T(u) = T({@link ThreatSearchMoveStrategy#unMark}) + O(K)</code>
+     */
+    @Override
+    public void unMark() {
+        if( currentBoard.getMarkedCellsCount() > 0 ) {
+            MNKCell oldc = currentBoard.getLastMarked();
+            int unMarkingPlayer = Utils.getPlayerIndex(oldc.state);
+            int cellIndex = matrixMap.getArrayIndexFromMatrixIndexes(oldc.i, oldc.j);
+            currentState.toggle(unMarkingPlayer, cellIndex);
+            for (int window : cellWindows[cellIndex])
+                updateWindow(window, unMarkingPlayer, -1);
+        }
+        super.unMark();
+    }
+
+    /**
+     * Add the change to the marks of the player in the window, and update the live and four windows counts of both players
+     * @param change 1 on mark, -1 on unmark
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(1)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    protected void updateWindow(int window, int player, int change) {
+        final int K = currentBoard.K;
+        final int opponent = 1 - player;
+        int oldMarks = windowMarks[player][window], opponentMarks = windowMarks[opponent][window];
+        int newMarks = oldMarks + change;
+        windowMarks[player][window] = newMarks;
+
+        if( (oldMarks == 0) != (newMarks == 0) ) {
+            liveWindows[opponent] -= change;
+            if( opponentMarks == K - 1 )
+                fourWindows[opponent] -= change;
+        }
+        if( opponentMarks == 0 ) {
+            if( oldMarks == K - 1 ) fourWindows[player]--;
+            if( newMarks == K - 1 ) fourWindows[player]++;
+        }
+    }
+
+    /**
+     * Fixed capacity table of proof numbers, indexed by zobrist key.
+     * A slot is always replaced, except that a solved node is never replaced by an unsolved one
+     */
+    protected static class ProofNumberTable {
+        protected final long[] keys;
+        protected final int[] phis;
+        protected final int[] deltas;
+        protected final int mask;
+
+        /**
+         * @param sizeMB max memory in megabytes, rounded down to a power of two count of slots
+         */
+        protected ProofNumberTable(int sizeMB) {
+            long slots = Math.max(1L, ((long) sizeMB << 20) / (Long.BYTES + 2 * Integer.BYTES));
+            int capacity = Integer.highestOneBit((int) Math.min(slots, 1 << 30));
+            keys = new long[capacity];
+            phis = new int[capacity];
+            deltas = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        /**
+         * @return the slot of the key, or -1 if it isn't stored
+         */
+        protected int probe(long key) {
+            int slot = (int) (key ^ (key >>> 32)) & mask;
+            // an empty slot has both proof numbers at 0, which no node can have
+            return keys[slot] == key && (phis[slot] | deltas[slot]) != 0 ? slot : -1;
+        }
+
+        protected int getPhi(int slot) {
+            return phis[slot];
+        }
+
+        protected int getDelta(int slot) {
+            return deltas[slot];
+        }
+
+        protected void store(long key, int phi, int delta) {
+            int slot = (int) (key ^ (key >>> 32)) & mask;
+            boolean isSolved = phi == 0 || delta == 0;
+            boolean isStoredSolved = phis[slot] == 0 || deltas[slot] == 0;
+            if( keys[slot] != key && isStoredSolved && !isSolved && (phis[slot] | deltas[slot]) != 0 )
+                return;
+            keys[slot] = key;
+            phis[slot] = phi;
+            deltas[slot] = delta;
+        }
+
+        protected void clear() {
+            Arrays.fill(keys, 0L);
+            Arrays.fill(phis, 0);
+            Arrays.fill(deltas, 0);
+        }
+    }
+}
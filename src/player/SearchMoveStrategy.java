@@ -40,4 +40,9 @@ public interface SearchMoveStrategy<MOVE> {
      * @return free moves candidates to be processed at caller
      */
     Iterable<MOVE> getMovesCandidates();
+
+    /**
+     * Release the resources held by the strategy, as no more searches will be done
+     */
+    default void release() {}
 }
@@ -0,0 +1,296 @@
+package player;
+
+import mnkgame.MNKCell;
+import mnkgame.MNKCellState;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only database of the game-theoretic values of all positions of a small (M,N,K) configuration,
+ * memory mapped from a file generated by {@link SolvedPositionDatabaseGenerator}.
+ * Each position is stored in one byte, at the index given by {@link #rank(int, int)}, as
+ * <code>result (2 bit) | distance to the end of the game with perfect play (6 bit)</code>,
+ * where the result is relative to the player to move.
+ *
+ * The index is a perfect hash of the position: positions are grouped by marked cells count t,
+ * and in each group are ranked by the combinatorial number system of the first player's cells,
+ * then of the second player's cells among the cells left free by the first player.
+ * So boards up to {@link #MAX_CELLS} cells are supported, as a 5x4 board already has ~7.4*10^8 positions.
+ *
+ * File format (big endian):
+ * <pre>
+ * header:  magic (int) | version (int) | M (int) | N (int) | K (int) | positions count (int)
+ * entries: one byte per position
+ * </pre>
+ */
+public class SolvedPositionDatabase {
+
+    public static final int MAGIC = 0x4D4E4B44; // "MNKD"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 6 * Integer.BYTES;
+    public static final int MAX_CELLS = 20;
+    public static final String DEFAULT_DIRECTORY = "books";
+
+    public static final int UNKNOWN = 0;
+    public static final int WIN = 1;
+    public static final int LOSS = 2;
+    public static final int DRAW = 3;
+    protected static final int RESULT_SHIFT = 6;
+    protected static final int DISTANCE_MASK = 0x3F;
+
+    protected final int M, N, K;
+    protected final int cellsCount;
+    // binomials[n][k] = n choose k
+    protected final long[][] binomials;
+    // offset of the ranks of the positions with t marked cells
+    protected final long[] layerOffsets;
+    protected final int[] winningLines;
+    protected MappedByteBuffer buffer;
+
+    protected SolvedPositionDatabase(int M, int N, int K) {
+        if( M * N > MAX_CELLS )
+            throw new IllegalArgumentException("Boards with more than " + MAX_CELLS + " cells are not supported");
+        this.M = M;
+        this.N = N;
+        this.K = K;
+        cellsCount = M * N;
+
+        binomials = new long[cellsCount + 1][cellsCount + 1];
+        for (int n = 0; n <= cellsCount; n++) {
+            binomials[n][0] = 1;
+            for (int k = 1; k <= n; k++)
+                binomials[n][k] = binomials[n - 1][k - 1] + binomials[n - 1][k];
+        }
+
+        layerOffsets = new long[cellsCount + 2];
+        for (int t = 0; t <= cellsCount; t++)
+            layerOffsets[t + 1] = layerOffsets[t] + getLayerSize(t);
+
+        winningLines = initWinningLines(M, N, K);
+    }
+
+    private static int[] initWinningLines(int M, int N, int K) {
+        int[][] directions = { {0, 1}, {1, 0}, {1, 1}, {1, -1} };
+        int[] lines = new int[4 * M * N];
+        int count = 0;
+        for (int i = 0; i < M; i++) {
+            for (int j = 0; j < N; j++) {
+                for (int[] d : directions) {
+                    int endI = i + (K - 1) * d[0], endJ = j + (K - 1) * d[1];
+                    if( endI < 0 || endI >= M || endJ < 0 || endJ >= N )
+                        continue;
+                    int line = 0;
+                    for (int k = 0; k < K; k++)
+                        line |= 1 << ((i + k * d[0]) * N + (j + k * d[1]));
+                    lines[count++] = line;
+                }
+            }
+        }
+        int[] result = new int[count];
+        System.arraycopy(lines, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * @return the name of the database file for the configuration
+     */
+    public static String getFileName(int M, int N, int K) {
+        return "solved-" + M + "-" + N + "-" + K + ".db";
+    }
+
+    /**
+     * Memory map the database of the configuration, from the provided directory
+     * @return the database, or null if there isn't a valid database for the configuration
+     */
+    public static SolvedPositionDatabase load(String directory, int M, int N, int K) {
+        if( M * N > MAX_CELLS )
+            return null;
+        File file = new File(directory, getFileName(M, N, K));
+        if( !file.isFile() )
+            return null;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            SolvedPositionDatabase database = new SolvedPositionDatabase(M, N, K);
+            if( buffer.capacity() < HEADER_SIZE
+                || buffer.getInt(0) != MAGIC
+                || buffer.getInt(4) != VERSION
+                || buffer.getInt(8) != M
+                || buffer.getInt(12) != N
+                || buffer.getInt(16) != K
+                || buffer.getInt(20) != database.size()
+                || buffer.capacity() < HEADER_SIZE + (long) database.size() ) {
+                return null;
+            }
+            database.buffer = buffer;
+            return database;
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the count of positions, including the unreachable ones
+     */
+    public int size() {
+        return (int) layerOffsets[cellsCount + 1];
+    }
+
+    /**
+     * @return the count of positions with t marked cells
+     */
+    public long getLayerSize(int t) {
+        int x = (t + 1) / 2, o = t / 2;
+        return binomials[cellsCount][x] * binomials[cellsCount - x][o];
+    }
+
+    /**
+     * @param cells bitfield of cells
+     * @return the rank of the combination of cells in colexicographic order
+     */
+    protected long colexRank(int cells) {
+        long rank = 0;
+        int k = 0;
+        while (cells != 0) {
+            int c = Integer.numberOfTrailingZeros(cells);
+            rank += binomials[c][++k];
+            cells &= cells - 1;
+        }
+        return rank;
+    }
+
+    /**
+     * @return the bits of cells at the positions of the set bits of mask, packed as the lowest bits
+     */
+    protected static int compress(int cells, int mask) {
+        int result = 0;
+        int bit = 0;
+        while (mask != 0) {
+            int lowest = mask & -mask;
+            if( (cells & lowest) != 0 )
+                result |= 1 << bit;
+            bit++;
+            mask &= mask - 1;
+        }
+        return result;
+    }
+
+    /**
+     * Perfect hash of a position
+     * @param p1 bitfield of the first player's cells, where cell (i,j) is the bit i*N+j
+     * @param p2 bitfield of the second player's cells
+     * @return the index of the position
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(M*N)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    public int rank(int p1, int p2) {
+        int x = Integer.bitCount(p1), o = Integer.bitCount(p2);
+        int free = ~p1 & ((1 << cellsCount) - 1);
+        return (int) (layerOffsets[x + o]
+                + colexRank(p1) * binomials[cellsCount - x][o]
+                + colexRank(compress(p2, free)));
+    }
+
+    public boolean hasWinningLine(int cells) {
+        for (int line : winningLines) {
+            if( (cells & line) == line )
+                return true;
+        }
+        return false;
+    }
+
+    public int getEntry(int p1, int p2) {
+        return buffer.get(HEADER_SIZE + rank(p1, p2)) & 0xFF;
+    }
+
+    public static int getResult(int entry) {
+        return entry >>> RESULT_SHIFT;
+    }
+
+    public static int getDistance(int entry) {
+        return entry & DISTANCE_MASK;
+    }
+
+    public static int toEntry(int result, int distance) {
+        return (result << RESULT_SHIFT) | (distance & DISTANCE_MASK);
+    }
+
+    /**
+     * @return the bitfield of the cells of player on board
+     */
+    public int toBitfield(EBoard board, MNKCellState player) {
+        int cells = 0;
+        MNKCellState[][] states = board.states();
+        for (int i = 0; i < M; i++) {
+            for (int j = 0; j < N; j++) {
+                if( states[i][j] == player )
+                    cells |= 1 << (i * N + j);
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * @return the entry of current position of the board
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(M*N)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    public int getEntry(EBoard board) {
+        return getEntry(toBitfield(board, MNKCellState.P1), toBitfield(board, MNKCellState.P2));
+    }
+
+    /**
+     * Search the move with the best result for the player to move: the fastest win, else a draw, else the slowest loss
+     * @param board the current position
+     * @param bestEntry buffer where the entry of the position reached by the best move is stored, relative to the opponent
+     * @return the best move, or null if the game is ended
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O( (M*N)^2 )</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    public MNKCell getBestMove(EBoard board, int[] bestEntry) {
+        int p1 = toBitfield(board, MNKCellState.P1);
+        int p2 = toBitfield(board, MNKCellState.P2);
+        boolean isFirstToMove = board.currentPlayer() == 0;
+        int free = ~(p1 | p2) & ((1 << cellsCount) - 1);
+
+        int bestCell = -1, bestScore = Integer.MIN_VALUE;
+        while (free != 0) {
+            int cell = Integer.numberOfTrailingZeros(free);
+            free &= free - 1;
+            int entry = isFirstToMove ? getEntry(p1 | (1 << cell), p2) : getEntry(p1, p2 | (1 << cell));
+            int score = getScoreForPreviousPlayer(entry);
+            if( score > bestScore ) {
+                bestScore = score;
+                bestCell = cell;
+                bestEntry[0] = entry;
+            }
+        }
+        return bestCell >= 0 ? new MNKCell(bestCell / N, bestCell % N) : null;
+    }
+
+    /**
+     * @return a score that sorts the entries by preference of the player who moved to reach them
+     */
+    protected static int getScoreForPreviousPlayer(int entry) {
+        int distance = getDistance(entry);
+        switch (getResult(entry)) {
+            case LOSS: return 2 * DISTANCE_MASK - distance;
+            case DRAW: return 0;
+            case WIN: return -2 * DISTANCE_MASK + distance;
+            default: return -3 * DISTANCE_MASK;
+        }
+    }
+}
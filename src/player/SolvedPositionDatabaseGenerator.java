@@ -0,0 +1,176 @@
+package player;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Offline retrograde solver of all positions of a small (M,N,K) configuration, that writes a {@link SolvedPositionDatabase}.
+ * Positions are solved layer by layer, from the full board down to the empty one, so each position is classified
+ * from the already solved positions reached by its moves:
+ * <ul>
+ *     <li>if the last player aligned K symbols, it's a loss at distance 0 for the player to move</li>
+ *     <li>else if the board is full, it's a draw</li>
+ *     <li>else it's a win if any move reaches a loss for the opponent (at the min distance),
+ *     a draw if any move reaches a draw, a loss otherwise (at the max distance)</li>
+ * </ul>
+ * Positions that can't be reached in a game (i.e. the player to move already aligned K symbols) are left unknown.
+ *
+ * Usage, in the src/ directory:
+ * <pre>java -Xmx2g -cp ".." player.SolvedPositionDatabaseGenerator M N K [output directory]</pre>
+ */
+public class SolvedPositionDatabaseGenerator {
+
+    protected final SolvedPositionDatabase database;
+    protected final int cellsCount;
+    protected final int fullMask;
+    protected final byte[] entries;
+
+    /**
+     * @param M Board rows
+     * @param N Board columns
+     * @param K Number of symbols to be aligned
+     * @implNote Cost <ul>
+     *      <li>Space: <code>O(P)</code> where P is the count of positions</li>
+     * </ul>
+     */
+    public SolvedPositionDatabaseGenerator(int M, int N, int K) {
+        database = new SolvedPositionDatabase(M, N, K);
+        cellsCount = M * N;
+        fullMask = (1 << cellsCount) - 1;
+        entries = new byte[database.size()];
+    }
+
+    /**
+     * Solve all positions
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O( P * (M*N)^2 )</code> where P is the count of positions</li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    public void generate() {
+        for (int t = cellsCount; t >= 0; t--) {
+            int x = (t + 1) / 2, o = t / 2;
+            int rank = (int) database.layerOffsets[t];
+            // ranks follow the enumeration order, as combinations are enumerated in colexicographic order
+            for (int p1 = firstCombination(x); p1 <= fullMask && p1 >= 0; p1 = nextCombination(p1)) {
+                int free = ~p1 & fullMask;
+                for (int q = firstCombination(o); q < (1 << (cellsCount - x)) && q >= 0; q = nextCombination(q)) {
+                    entries[rank++] = (byte) solve(p1, deposit(q, free), t);
+                    if( o == 0 ) break;
+                }
+                if( x == 0 ) break;
+            }
+            System.out.println("Solved " + database.getLayerSize(t) + " positions with " + t + " marks");
+        }
+    }
+
+    protected int solve(int p1, int p2, int t) {
+        boolean isFirstToMove = t % 2 == 0;
+        int lastPlayerCells = isFirstToMove ? p2 : p1;
+        int playerCells = isFirstToMove ? p1 : p2;
+
+        if( t > 0 && database.hasWinningLine(lastPlayerCells) )
+            return SolvedPositionDatabase.toEntry(SolvedPositionDatabase.LOSS, 0);
+        if( database.hasWinningLine(playerCells) )
+            return SolvedPositionDatabase.toEntry(SolvedPositionDatabase.UNKNOWN, 0);
+        if( t == cellsCount )
+            return SolvedPositionDatabase.toEntry(SolvedPositionDatabase.DRAW, 0);
+
+        int minWinDistance = Integer.MAX_VALUE, maxLossDistance = 0;
+        boolean canDraw = false;
+        int free = ~(p1 | p2) & fullMask;
+        while (free != 0) {
+            int cell = free & -free;
+            free &= free - 1;
+            int child = isFirstToMove ? entries[database.rank(p1 | cell, p2)] : entries[database.rank(p1, p2 | cell)];
+            int distance = SolvedPositionDatabase.getDistance(child) + 1;
+            switch (SolvedPositionDatabase.getResult(child & 0xFF)) {
+                case SolvedPositionDatabase.LOSS:
+                    minWinDistance = Math.min(minWinDistance, distance);
+                    break;
+                case SolvedPositionDatabase.WIN:
+                    maxLossDistance = Math.max(maxLossDistance, distance);
+                    break;
+                default:
+                    canDraw = true;
+                    break;
+            }
+        }
+
+        if( minWinDistance != Integer.MAX_VALUE )
+            return SolvedPositionDatabase.toEntry(SolvedPositionDatabase.WIN, minWinDistance);
+        else if( canDraw )
+            return SolvedPositionDatabase.toEntry(SolvedPositionDatabase.DRAW, 0);
+        else
+            return SolvedPositionDatabase.toEntry(SolvedPositionDatabase.LOSS, maxLossDistance);
+    }
+
+    protected static int firstCombination(int k) {
+        return (1 << k) - 1;
+    }
+
+    /**
+     * @return the next combination with the same bits count, in colexicographic order (Gosper's hack)
+     */
+    protected static int nextCombination(int combination) {
+        int lowest = combination & -combination;
+        int ripple = combination + lowest;
+        return ripple | (((combination ^ ripple) >>> 2) / lowest);
+    }
+
+    /**
+     * @return the lowest bits of cells moved to the positions of the set bits of mask
+     */
+    protected static int deposit(int cells, int mask) {
+        int result = 0;
+        while (mask != 0 && cells != 0) {
+            int lowest = mask & -mask;
+            if( (cells & 1) != 0 )
+                result |= lowest;
+            cells >>>= 1;
+            mask &= mask - 1;
+        }
+        return result;
+    }
+
+    /**
+     * Write the database
+     * @param directory the output directory
+     * @return the database file
+     * @throws IOException if the database can't be written
+     */
+    public File write(String directory) throws IOException {
+        File file = new File(directory, SolvedPositionDatabase.getFileName(database.M, database.N, database.K));
+        if( file.getParentFile() != null )
+            file.getParentFile().mkdirs();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(SolvedPositionDatabase.MAGIC);
+            out.writeInt(SolvedPositionDatabase.VERSION);
+            out.writeInt(database.M);
+            out.writeInt(database.N);
+            out.writeInt(database.K);
+            out.writeInt(entries.length);
+            out.write(entries);
+        }
+        return file;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if( args.length < 3 ) {
+            System.err.println("Usage: SolvedPositionDatabaseGenerator M N K [output directory]");
+            System.exit(1);
+        }
+        int M = Integer.parseInt(args[0]);
+        int N = Integer.parseInt(args[1]);
+        int K = Integer.parseInt(args[2]);
+        String directory = args.length > 3 ? args[3] : SolvedPositionDatabase.DEFAULT_DIRECTORY;
+
+        SolvedPositionDatabaseGenerator generator = new SolvedPositionDatabaseGenerator(M, N, K);
+        generator.generate();
+        File file = generator.write(directory);
+        System.out.println("Written " + generator.entries.length + " positions to " + file.getPath());
+    }
+}
@@ -5,6 +5,7 @@ import mnkgame.MNKCellState;
 import mnkgame.MNKGameState;
 
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.PriorityQueue;
 
@@ -51,8 +52,98 @@ public class ThreatSearchMoveStrategy extends AlphaBetaPruningSearchMoveStrategy
     public static final boolean DEBUG_SHOW_CANDIDATES = Debug.Player.DEBUG_SHOW_CANDIDATES;
     public static final boolean DEBUG_START_FIXED_MOVE = Debug.Player.DEBUG_START_FIXED_MOVE;
 
+    /**
+     * If true, the last {@link #KILLER_MOVES_PER_PLY} moves that caused a cutoff at the same ply
+     * are searched before the moves with a slightly higher threat priority, see {@link #getOrderingScore}
+     */
+    public boolean USE_KILLER_MOVES = true;
+    public int KILLER_MOVES_PER_PLY = 2;
+    /**
+     * Threat priority points a killer move is promoted by
+     */
+    public int KILLER_MOVE_BONUS = 2;
+    /**
+     * If true, the moves that caused cutoffs anywhere in the tree for the same player are promoted by up to 1 threat priority point,
+     * proportionally to the squared depths left of their cutoffs, see {@link #getOrderingScore}
+     */
+    public boolean USE_HISTORY_HEURISTIC = true;
+    /**
+     * If true, before the alpha beta search, a {@link ThreatSpaceSearch} looks for a forced win of threats,
+     * within {@link #THREAT_SPACE_SEARCH_MAX_NODES} nodes and {@link #THREAT_SPACE_SEARCH_TIME_RATIO} of the search time
+     */
+    public boolean USE_THREAT_SPACE_SEARCH = true;
+    public long THREAT_SPACE_SEARCH_MAX_NODES = 200000;
+    public float THREAT_SPACE_SEARCH_TIME_RATIO = 0.2f;
+    protected ThreatSpaceSearch threatSpaceSearch;
+    /**
+     * If true, the open nodes at the depth horizon aren't evaluated while a player has a threat with one move left:
+     * a quiescence search keeps searching only the moves that block it, or that create one, see {@link #quiescence}
+     */
+    public boolean USE_THREAT_QUIESCENCE = true;
+    /**
+     * Max plies searched by the quiescence search beyond the depth horizon
+     */
+    public int QUIESCENCE_MAX_DEPTH = 6;
+    /**
+     * Max count of candidates, in threat priority order, tried on each node of the quiescence search
+     */
+    public int QUIESCENCE_MAX_MOVES = 8;
+    /**
+     * If true, the late moves with a low threat priority are searched with a null window at a reduced depth,
+     * and searched again at full depth only if they beat the bound of the node, see {@link #getLateMoveReduction}
+     */
+    public boolean USE_LATE_MOVE_REDUCTIONS = false;
+    /**
+     * Index, in the candidates order, of the first move that can be reduced
+     */
+    public int LMR_MIN_MOVE_INDEX = 3;
+    /**
+     * Min depth left of a node to reduce its moves
+     */
+    public int LMR_MIN_DEPTH_LEFT = 3;
+    /**
+     * Max threat priority, at the time it is marked, of a move that can be reduced
+     */
+    public int LMR_MAX_PRIORITY = 0;
+    /**
+     * Plies a reduced move is reduced by, and the extra plies from the move at index {@link #LMR_LATE_MOVE_INDEX}
+     */
+    public int LMR_REDUCTION = 1;
+    public int LMR_LATE_MOVE_INDEX = 8;
+    public int LMR_LATE_MOVE_EXTRA_REDUCTION = 1;
+    /**
+     * If greater than 0, when the free cells are at most this count, before the alpha beta search
+     * a {@link ProofNumberSearchMoveStrategy} tries to prove a win of the player to move,
+     * within its nodes budget and {@link #ENDGAME_SOLVER_TIME_RATIO} of the search time
+     */
+    public int ENDGAME_SOLVER_FREE_CELLS = 16;
+    public float ENDGAME_SOLVER_TIME_RATIO = 0.3f;
+    protected ProofNumberSearchMoveStrategy endgameSolver;
+    // true if the result of the current search is a win proven by searchForcedWin
+    protected boolean isForcedWinFound;
+
     protected EBoardWithGameEnd currentBoard;
     protected final ScanThreatDetectionLogic threatDetectionLogic = new ScanThreatDetectionLogic();
+    // killerMoves[ply][slot] = index of cell, or -1, most recent first
+    protected int[][] killerMoves;
+    // history[player][index of cell]
+    protected long[][] history;
+    protected long[] maxHistory;
+    // orderingScores[ply][index of cell], written by the candidates of the node at that ply
+    protected long[][] orderingScores;
+    // markedPriorities[ply] = threat priority of the cell marked at that ply, when it was marked
+    protected int[] markedPriorities;
+    // the search reuses these buffers, so its nodes don't allocate them
+    // candidatesQueues[ply] and quiescenceQueues[ply] are reused by the nodes at that ply, that don't overlap, see #getMovesCandidates
+    protected MovesCandidates[] movesCandidates;
+    protected PriorityQueue<MNKCell>[] candidatesQueues;
+    protected PriorityQueue<MNKCell>[] quiescenceQueues;
+    protected MNKCell[] freeCellsBuffer;
+    // playerCells[player][index of cell] = the cell marked by the player
+    protected MNKCell[][] playerCells;
+    protected final int[] evaluationScores = new int[2];
+    protected final int[] evaluationThreatScores = new int[2];
+    protected static final int[] EVALUATION_WEIGHTS = { 100000, 100000, 1000, 1 };
 
     public ThreatSearchMoveStrategy() {
         super();
@@ -105,9 +196,55 @@ public class ThreatSearchMoveStrategy extends AlphaBetaPruningSearchMoveStrategy
 
         threatDetectionLogic.init(M, N, K);
 
+        killerMoves = new int[M*N + 1][Math.max(0, KILLER_MOVES_PER_PLY)];
+        for (int[] killers : killerMoves)
+            Arrays.fill(killers, -1);
+        history = new long[2][M*N];
+        maxHistory = new long[2];
+        orderingScores = new long[M*N + 1][];
+        markedPriorities = new int[M*N + 1];
+        movesCandidates = new MovesCandidates[M*N + 1];
+        candidatesQueues = newQueues(M*N + 1);
+        quiescenceQueues = newQueues(M*N + 1);
+        freeCellsBuffer = new MNKCell[M*N];
+        playerCells = new MNKCell[2][M*N];
+        for (int i = 0; i < M; i++) {
+            for (int j = 0; j < N; j++) {
+                for (int p = 0; p < 2; p++)
+                    playerCells[p][i*N + j] = new MNKCell(i, j, Utils.getPlayerMark(p));
+            }
+        }
+        threatSpaceSearch = USE_THREAT_SPACE_SEARCH ? new ThreatSpaceSearch(M, N, K) : null;
+        endgameSolver = null;
+        if( ENDGAME_SOLVER_FREE_CELLS > 0 ) {
+            endgameSolver = new ProofNumberSearchMoveStrategy();
+            endgameSolver.USE_THREAT_SPACE_SEARCH = false;
+            endgameSolver.init(M, N, K, first, timeout_in_secs);
+        }
+
         setInValidState();
     }
 
+    /**
+     * @param length count of plies
+     * @return an array with a null slot for the queue of each ply, filled on its first use
+     */
+    @SuppressWarnings("unchecked")
+    private static PriorityQueue<MNKCell>[] newQueues(int length) {
+        return (PriorityQueue<MNKCell>[]) new PriorityQueue<?>[length];
+    }
+
+    /**
+     * Release the endgame solver
+     */
+    @Override
+    public void release() {
+        if( endgameSolver != null ) {
+            endgameSolver.release();
+            endgameSolver = null;
+        }
+    }
+
     @Override
     protected void initTrackingBoard(int M, int N, int K) {
         setBoard(new EBoardWithGameEnd(M, N, K) {
@@ -139,9 +276,8 @@ public class ThreatSearchMoveStrategy extends AlphaBetaPruningSearchMoveStrategy
      * </ul>
      */
     @Override
-    protected AlphaBetaOutcome evaluate(int depth, boolean isMyTurn) {
+    protected long evaluate(int depth, boolean isMyTurn) {
         MNKGameState gameState = currentBoard.gameState();
-        AlphaBetaOutcome outcome = new AlphaBetaOutcome();
         depth = getSimulatedRound();
 
         int score = STANDARD_SCORES.get(gameState);
@@ -149,10 +285,12 @@ public class ThreatSearchMoveStrategy extends AlphaBetaPruningSearchMoveStrategy
         int opponentIndex = 1-playerIndex;
 
         if (gameState == MNKGameState.OPEN) { // game is open
-            final int[] playerScores = new int[2];
-            final int[] maxPlayerThreatScores = {0, 0};
+            final int[] playerScores = evaluationScores;
+            final int[] maxPlayerThreatScores = evaluationThreatScores;
+            Arrays.fill(playerScores, 0);
+            Arrays.fill(maxPlayerThreatScores, 0);
             // final int[] totalPlayerScores = {0, 0};
-            final int[] weight = new int[]{ 100000, 100000, 1000, 1 };
+            final int[] weight = EVALUATION_WEIGHTS;
             // O( 8 * 3 )
             for (int indexPlayer = 0; indexPlayer < 2; indexPlayer++) {
                 for ( int directionType : Utils.DIRECTIONS ) {
@@ -182,10 +320,7 @@ public class ThreatSearchMoveStrategy extends AlphaBetaPruningSearchMoveStrategy
         else if( score <= -depth)
             score += depth-1;
 
-        outcome.eval = score;
-        outcome.depth = depth;
-        outcome.state = gameState;
-        return outcome;
+        return AlphaBetaOutcome.pack(score, depth, gameState);
     }
 
     /*
@@ -253,7 +388,9 @@ public class ThreatSearchMoveStrategy extends AlphaBetaPruningSearchMoveStrategy
             default:
                 if ( DEBUG_SHOW_CANDIDATES )
                     Debug.println("Candidates: " + this.getMovesCandidates());
-                super.search();
+                lastResult = searchForcedWin();
+                if( lastResult == null )
+                    super.search();
                 break;
         }
         // we returned so assuming all right
@@ -261,6 +398,289 @@ public class ThreatSearchMoveStrategy extends AlphaBetaPruningSearchMoveStrategy
         return lastResult.move;
     }
 
+    /**
+     * Search a forced win of the player to move with {@link #searchThreatSpace()}, then with {@link #searchEndgameProof()}
+     * @return the outcome of the first move of the win, or null if no forced win has been found
+     */
+    protected AlphaBetaOutcome searchForcedWin() {
+        AlphaBetaOutcome outcome = searchThreatSpace();
+        if( outcome == null )
+            outcome = searchEndgameProof();
+        isForcedWinFound = outcome != null;
+        return outcome;
+    }
+
+    /**
+     * Search a forced win of threats of the player to move with {@link #threatSpaceSearch}
+     * @return the outcome of the first move of the winning line, or null if {@link #USE_THREAT_SPACE_SEARCH} is false or there isn't a forced win of threats
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O( T({@link ThreatSpaceSearch#solve}) )</code></li>
+     *      <li>Space: <code>O( S({@link ThreatSpaceSearch#solve}) )</code></li>
+     * </ul>
+     */
+    protected AlphaBetaOutcome searchThreatSpace() {
+        if( threatSpaceSearch == null || currentBoard.gameState() != MNKGameState.OPEN )
+            return null;
+
+        long threatSpaceEndTime = startTime + (long) ((expectedEndTime - startTime) * THREAT_SPACE_SEARCH_TIME_RATIO);
+        threatSpaceSearch.load(currentBoard);
+        MNKCell[] line = threatSpaceSearch.solve(currentBoard.currentPlayer(), THREAT_SPACE_SEARCH_MAX_NODES, threatSpaceEndTime);
+        if( DEBUG_SHOW_INFO )
+            Debug.println("Threat space search: " + threatSpaceSearch.getNodes() + " nodes"
+                    + (threatSpaceSearch.isAborted() ? ", aborted" : "")
+                    + (line != null ? ", winning line " + Arrays.toString(line) : ""));
+        if( line == null )
+            return null;
+
+        AlphaBetaOutcome outcome = toSolvedOutcome(SolvedPositionDatabase.WIN, line.length, currentBoard.currentPlayer());
+        outcome.move = line[0];
+        return outcome;
+    }
+
+    /**
+     * Prove a forced win of the player to move with {@link #endgameSolver}, if the free cells are at most {@link #ENDGAME_SOLVER_FREE_CELLS}.
+     * The solver has its own board, that is brought to the state of the game's marked cells and left invalid,
+     * so the next call restores it from the marked cells of that round
+     * @return the outcome of a winning move, or null if the solver is disabled or the win isn't proven
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O( T({@link ProofNumberSearchMoveStrategy#searchProof}) )</code></li>
+     *      <li>Space: <code>O( S({@link ProofNumberSearchMoveStrategy#searchProof}) )</code></li>
+     * </ul>
+     */
+    protected AlphaBetaOutcome searchEndgameProof() {
+        if( endgameSolver == null || currentBoard.gameState() != MNKGameState.OPEN
+            || currentBoard.getFreeCellsCount() > ENDGAME_SOLVER_FREE_CELLS )
+            return null;
+
+        long solverEndTime = startTime + (long) ((expectedEndTime - startTime) * ENDGAME_SOLVER_TIME_RATIO);
+        endgameSolver.initSearch(startingRoundFC, startingRoundMC);
+        AlphaBetaOutcome outcome = endgameSolver.searchProof(solverEndTime);
+        endgameSolver.invalidateState();
+        if( DEBUG_SHOW_INFO )
+            Debug.println("Endgame proof: " + endgameSolver.getNodes() + " nodes"
+                    + (endgameSolver.isAborted() ? ", aborted" : "")
+                    + (outcome != null ? ", winning move " + outcome.move : ""));
+        return outcome;
+    }
+
+    /**
+     * @implNote Cost <ul>
+     *      <li>Time: <code>T({@link #quiescence})</code> if {@link #USE_THREAT_QUIESCENCE}, otherwise <code>O(1)</code></li>
+     *      <li>Space: <code>S({@link #quiescence})</code></li>
+     * </ul>
+     */
+    @Override
+    protected long evaluateHorizon(boolean shouldMaximize, int a, int b, int depth, long endTime) {
+        if( !USE_THREAT_QUIESCENCE )
+            return super.evaluateHorizon(shouldMaximize, a, b, depth, endTime);
+        return quiescence(shouldMaximize, a, b, depth, 0, endTime);
+    }
+
+    /**
+     * Search only the threat moves until the position is quiet, so the horizon nodes aren't evaluated in the middle of a forced sequence.
+     * The threats are the ones with one move left, counted by {@link ScanThreatDetectionLogic#getMovesLeftArrayCount}:
+     * <ul>
+     *     <li>if the player to move has one, the node is a win of the player to move</li>
+     *     <li>if the opponent has one, the player to move must block it, so only the moves that block all of them are searched,
+     *     and the node is a loss if none of the first {@link #QUIESCENCE_MAX_MOVES} candidates does</li>
+     *     <li>otherwise the player to move can stand pat on the {@link #evaluate} of the node, or search a move that creates one</li>
+     * </ul>
+     * @param shouldMaximize if true then will compute best move for this player else for enemy player
+     * @param a best score for this player
+     * @param b best score for simulated enemy
+     * @param depth current depth level
+     * @param quiescenceDepth plies searched beyond the depth horizon
+     * @param endTime max time that the algorithm should run up to
+     * @return the packed score of the node, or {@link AlphaBetaOutcome#NO_SCORE} if {@link #isRewinding()}
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O( Q^D * (T(u) + N*M) )</code> on worst case, where Q = {@link #QUIESCENCE_MAX_MOVES} and D = {@link #QUIESCENCE_MAX_DEPTH},
+     *      but the threat moves are few, so it's often <code>O( D * Q * T(u) )</code></li>
+     *      <li>Space: <code>O( D * N*M )</code></li>
+     * </ul>
+     */
+    protected long quiescence(boolean shouldMaximize, int a, int b, int depth, int quiescenceDepth, long endTime) {
+        clearPrincipalVariation(depth);
+        if( currentBoard.gameState() != MNKGameState.OPEN )
+            return evaluate(depth, shouldMaximize);
+
+        final int player = currentBoard.currentPlayer();
+        final int opponent = 1 - player;
+        if( hasImmediateWin(player) )
+            return toSolvedScore(SolvedPositionDatabase.WIN, 1, player);
+
+        final boolean mustBlock = hasImmediateWin(opponent);
+        long bestScore = AlphaBetaOutcome.NO_SCORE;
+        if( !mustBlock || quiescenceDepth >= QUIESCENCE_MAX_DEPTH ) {
+            // stand pat
+            bestScore = evaluate(depth, shouldMaximize);
+            if( quiescenceDepth >= QUIESCENCE_MAX_DEPTH )
+                return bestScore;
+            if( shouldMaximize )
+                a = Math.max(a, AlphaBetaOutcome.getEval(bestScore));
+            else
+                b = Math.min(b, AlphaBetaOutcome.getEval(bestScore));
+            if( b <= a )
+                return bestScore;
+        }
+
+        final PriorityQueue<MNKCell> candidates = loadQuiescenceQueue(getSimulatedRound()); // O(N*M) to load
+        for (int count = 0; count < QUIESCENCE_MAX_MOVES && !candidates.isEmpty(); count++) {
+            // same time check of alphaBetaPruning, as the quiescence of a single horizon node can search up to Q^D nodes
+            if( isEarlyExitStarted || System.currentTimeMillis() >= endTime ) {
+                if( !isEarlyExitStarted ) {
+                    isEarlyExitStarted = true; startingExitTime = System.currentTimeMillis();
+                }
+                if( USE_FAST_REWIND )
+                    return AlphaBetaOutcome.NO_SCORE;
+                // without fast rewind provide the best score found so far
+                if( bestScore == AlphaBetaOutcome.NO_SCORE )
+                    bestScore = evaluate(depth, shouldMaximize);
+                break;
+            }
+
+            MNKCell move = candidates.poll();
+            mark(move);
+            boolean isThreatMove = mustBlock ? !hasImmediateWin(opponent) : hasImmediateWin(player);
+            if( isThreatMove || currentBoard.gameState() != MNKGameState.OPEN ) {
+                long score = quiescence(!shouldMaximize, a, b, depth + 1, quiescenceDepth + 1, endTime);
+                if( isRewinding() ) {
+                    unMark();
+                    return AlphaBetaOutcome.NO_SCORE;
+                }
+                long previousBestScore = bestScore;
+                if( shouldMaximize ) {
+                    bestScore = bestScore != AlphaBetaOutcome.NO_SCORE ? max(bestScore, score) : score;
+                    a = Math.max(a, AlphaBetaOutcome.getEval(score));
+                }
+                else {
+                    bestScore = bestScore != AlphaBetaOutcome.NO_SCORE ? min(bestScore, score) : score;
+                    b = Math.min(b, AlphaBetaOutcome.getEval(score));
+                }
+                if( bestScore != previousBestScore )
+                    updatePrincipalVariation(depth, move.i * currentBoard.N + move.j);
+            }
+            unMark();
+            if( b <= a )
+                break;
+        }
+
+        // no candidate blocks the threats of the opponent, that wins on its next move
+        if( bestScore == AlphaBetaOutcome.NO_SCORE )
+            bestScore = toSolvedScore(SolvedPositionDatabase.LOSS, 2, player);
+        return bestScore;
+    }
+
+    /**
+     * @param ply count of marked cells of the node
+     * @return the reused queue of the quiescence nodes at ply, loaded with the free cells in threat priority order
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(N*M)</code>, as the free cells are already in heap order</li>
+     *      <li>Space: <code>O(1)</code> amortized</li>
+     * </ul>
+     */
+    protected PriorityQueue<MNKCell> loadQuiescenceQueue(int ply) {
+        final PriorityQueue<MNKCell> free = threatDetectionLogic.getFree();
+        if( quiescenceQueues[ply] == null )
+            quiescenceQueues[ply] = new PriorityQueue<>(Math.max(1, free.size()), free.comparator());
+        final PriorityQueue<MNKCell> queue = quiescenceQueues[ply];
+        queue.clear();
+        int count = loadFreeCells();
+        for (int c = 0; c < count; c++)
+            queue.offer(freeCellsBuffer[c]);
+        return queue;
+    }
+
+    /**
+     * Copy the free cells in {@link #freeCellsBuffer}, in the heap order of {@link ThreatDetectionLogic#getFree()}
+     * @return the count of free cells
+     */
+    protected int loadFreeCells() {
+        final PriorityQueue<MNKCell> free = threatDetectionLogic.getFree();
+        free.toArray(freeCellsBuffer);
+        return free.size();
+    }
+
+    /**
+     * Search the late moves with a low threat priority with a null window at a reduced depth, see {@link #getLateMoveReduction}:
+     * if they beat the bound of the node they may be the new best move, so they are searched again at full depth with the window of the node
+     * @implNote Cost <ul>
+     *      <li>Time: <code>T({@link #alphaBetaPruning})</code> at a reduced depth on best case, plus a full depth re-search on worst case</li>
+     * </ul>
+     */
+    @Override
+    protected long searchChild(boolean shouldMaximize, int a, int b, int depth, int depthLeft, long endTime, int moveIndex) {
+        int reduction = getLateMoveReduction(depthLeft, moveIndex);
+        if( reduction <= 0 )
+            return super.searchChild(shouldMaximize, a, b, depth, depthLeft, endTime, moveIndex);
+
+        long score;
+        if( shouldMaximize ) {
+            score = super.searchChild(true, a, a + 1, depth, depthLeft - reduction, endTime, moveIndex);
+            if( isRewinding() )
+                return score;
+            // fail high: it may be better than the current best
+            if( AlphaBetaOutcome.getEval(score) > a )
+                score = super.searchChild(true, a, b, depth, depthLeft, endTime, moveIndex);
+        }
+        else {
+            score = super.searchChild(false, b - 1, b, depth, depthLeft - reduction, endTime, moveIndex);
+            if( isRewinding() )
+                return score;
+            // fail low: it may be better than the current best
+            if( AlphaBetaOutcome.getEval(score) < b )
+                score = super.searchChild(false, a, b, depth, depthLeft, endTime, moveIndex);
+        }
+        return score;
+    }
+
+    /**
+     * The last marked move is reduced if all of these hold:
+     * <ul>
+     *     <li>the parent node has at least {@link #LMR_MIN_DEPTH_LEFT} depth left</li>
+     *     <li>it's at least at index {@link #LMR_MIN_MOVE_INDEX} in the candidates order</li>
+     *     <li>its threat priority, when it was marked, is at most {@link #LMR_MAX_PRIORITY}</li>
+     *     <li>it's quiet: no player has a threat with one move left after it</li>
+     * </ul>
+     * @param depthLeft max depth to reach from the parent node
+     * @param moveIndex index of the move in the parent's candidates order
+     * @return plies the last marked move is reduced by, or 0 if it's not reduced
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(1)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    protected int getLateMoveReduction(int depthLeft, int moveIndex) {
+        if( !USE_LATE_MOVE_REDUCTIONS || depthLeft < LMR_MIN_DEPTH_LEFT || moveIndex < LMR_MIN_MOVE_INDEX )
+            return 0;
+        if( markedPriorities[currentBoard.getMarkedCellsCount() - 1] > LMR_MAX_PRIORITY )
+            return 0;
+        if( currentBoard.gameState() != MNKGameState.OPEN || hasImmediateWin(0) || hasImmediateWin(1) )
+            return 0;
+
+        int reduction = LMR_REDUCTION;
+        if( moveIndex >= LMR_LATE_MOVE_INDEX )
+            reduction += LMR_LATE_MOVE_EXTRA_REDUCTION;
+        // leave at least one ply to the child
+        return Math.min(reduction, depthLeft - 2);
+    }
+
+    /**
+     * @param player index of a player
+     * @return true if the player has a threat with one move left, that is a free cell that completes a line of K
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(1)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    protected boolean hasImmediateWin(int player) {
+        for ( int directionType : Utils.DIRECTIONS ) {
+            int[] movesLeftCount = threatDetectionLogic.getMovesLeftArrayCount(player, directionType);
+            if( movesLeftCount.length > 1 && movesLeftCount[1] > 0 )
+                return true;
+        }
+        return false;
+    }
+
     /**
      *
      * @param FC Free Cells: array of free cells
@@ -296,7 +716,24 @@ public class ThreatSearchMoveStrategy extends AlphaBetaPruningSearchMoveStrategy
             Debug.println( "after opponent move:\n" + boardToString() );
 
         lastResult = null;
+        isForcedWinFound = false;
         isEarlyExitStarted = false;
+        ageHistory();
+    }
+
+    /**
+     * Halve the history scores, so the cutoffs of the previous rounds weigh less than the ones of the current round
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(M*N)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    protected void ageHistory() {
+        for (int player = 0; player < 2; player++) {
+            for (int cell = 0; cell < history[player].length; cell++)
+                history[player][cell] >>= 1;
+            maxHistory[player] >>= 1;
+        }
     }
 
     /**
@@ -339,7 +776,8 @@ public class ThreatSearchMoveStrategy extends AlphaBetaPruningSearchMoveStrategy
     @Override
     public void mark(MNKCell marked) {
         int markingPlayer = currentBoard.currentPlayer();
-        MNKCell markedCell = new MNKCell(marked.i, marked.j, Utils.getPlayerMark(markingPlayer));
+        MNKCell markedCell = playerCells[markingPlayer][marked.i * currentBoard.N + marked.j];
+        markedPriorities[currentBoard.getMarkedCellsCount()] = threatDetectionLogic.freeCellsPrioritiesCache[marked.i][marked.j];
         getThreatDetectionLogic().mark(markedCell, markingPlayer, 0);
 
         super.mark(marked);
@@ -359,44 +797,200 @@ public class ThreatSearchMoveStrategy extends AlphaBetaPruningSearchMoveStrategy
     }
 
     /**
-     * Provide the moves candidates to process in {@link #alphaBetaPruning} node
+     * Provide the moves candidates to process in {@link #alphaBetaPruning} node:
+     * the {@link #getFirstCandidate()} if any, then the other free cells in the order of {@link #loadCandidatesQueue}.
+     * The queue is loaded only if the iteration goes past the first candidate, so a cutoff on the first candidate costs <code>O(1)</code>.
+     * The candidates and their queue are reused by all the nodes at the same ply, as a node iterates them before any other node at its ply is searched
      * @implNote
      * Call cost <ul>
-     *      <li>Time: <code>O(N*M)</code> where N*M is the count of free cell left</li>
-     *      <li>Space: <code>O(N*M)</code></li>
+     *      <li>Time: <code>O(T({@link #getFirstCandidate()}))</code></li>
+     *      <li>Space: <code>O(1)</code> amortized</li>
      * </ul>
      * per iteration Cost <ul>
-     *      <li>Time: <code>O({@link PriorityQueue#poll()})=O( log(N*M) ))</code> where N*M is the count of free moves left</li>
-     *      <li>Space: <code>O(N*M)</code></li>
+     *      <li>Time: <code>O({@link PriorityQueue#poll()})=O( log(N*M) ))</code> where N*M is the count of free moves left,
+     *      plus <code>T({@link #loadCandidatesQueue})</code> once, on the first iteration after the first candidate</li>
+     *      <li>Space: <code>O(1)</code> amortized</li>
      * </ul>
      * @return free moves candidates to be processed at caller board status
      */
     @Override
     public Iterable<MNKCell> getMovesCandidates() {
-        return new Iterable<>() {
-            final PriorityQueue<MNKCell> queue = new PriorityQueue<>(threatDetectionLogic.getFree()); // O(N*M) for copy
-            final Iterator<MNKCell> iterator = new Iterator<>() {
-                @Override
-                public boolean hasNext() {
-                    return !queue.isEmpty();
-                }
+        int ply = getSimulatedRound();
+        if( movesCandidates[ply] == null )
+            movesCandidates[ply] = new MovesCandidates(ply);
+        return movesCandidates[ply].reset(getFirstCandidate());
+    }
 
-                @Override
-                public MNKCell next() {
-                    return queue.poll(); // log (N*M)
-                }
-            };
+    /**
+     * The candidates of the last node at a ply, see {@link #getMovesCandidates()}
+     */
+    protected class MovesCandidates implements Iterable<MNKCell>, Iterator<MNKCell> {
+        protected final int ply;
+        protected MNKCell first;
+        protected boolean isFirstPending;
+        protected boolean isQueueLoaded;
+
+        protected MovesCandidates(int ply) {
+            this.ply = ply;
+        }
 
-            @Override
-            public Iterator<MNKCell> iterator() {
-                return iterator;
+        protected MovesCandidates reset(MNKCell first) {
+            this.first = first;
+            this.isFirstPending = first != null;
+            this.isQueueLoaded = false;
+            return this;
+        }
+
+        protected PriorityQueue<MNKCell> getQueue() {
+            if( !isQueueLoaded ) {
+                loadCandidatesQueue(ply);
+                isQueueLoaded = true;
             }
+            final PriorityQueue<MNKCell> queue = candidatesQueues[ply];
+            // the first candidate has already been provided
+            while( first != null && !queue.isEmpty() && Utils.compare(queue.peek(), first) == 0 )
+                queue.poll();
+            return queue;
+        }
 
-            @Override
-            public String toString() {
-                return Arrays.toString(queue.toArray(new MNKCell[0]));
+        @Override
+        public boolean hasNext() {
+            return isFirstPending || !getQueue().isEmpty();
+        }
+
+        @Override
+        public MNKCell next() {
+            if( isFirstPending ) {
+                isFirstPending = false;
+                return first;
+            }
+            return getQueue().poll(); // log (N*M)
+        }
+
+        @Override
+        public Iterator<MNKCell> iterator() {
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            MNKCell[] moves = getQueue().toArray(new MNKCell[0]);
+            return (isFirstPending ? first + " " : "") + Arrays.toString(moves);
+        }
+    }
+
+    /**
+     * @return the move to search before all other candidates of the current node, or null to follow the queue order.
+     * The move must be free
+     */
+    protected MNKCell getFirstCandidate() {
+        return null;
+    }
+
+    /**
+     * Load the reused queue of the node at ply with the free cells, sorted by threat priority,
+     * and by {@link #getOrderingScore} if {@link #USE_KILLER_MOVES} or {@link #USE_HISTORY_HEURISTIC}.
+     * The order is chosen by the flags on the first load of the ply's queue
+     * @param ply count of marked cells of the node
+     * @return the loaded queue
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(N*M)</code> where N*M is the count of free cell left, as they are already in heap order,
+     *      or <code>O(N*M * log(N*M))</code> with killer moves or history heuristic</li>
+     *      <li>Space: <code>O(1)</code> amortized</li>
+     * </ul>
+     */
+    protected PriorityQueue<MNKCell> loadCandidatesQueue(int ply) {
+        final int count = loadFreeCells();
+        final MNKCell[] free = freeCellsBuffer;
+        PriorityQueue<MNKCell> queue = candidatesQueues[ply];
+        if( USE_KILLER_MOVES || USE_HISTORY_HEURISTIC ) {
+            int player = currentBoard.currentPlayer();
+            if( orderingScores[ply] == null )
+                orderingScores[ply] = new long[currentBoard.M * currentBoard.N];
+            final long[] scores = orderingScores[ply];
+            for (int c = 0; c < count; c++)
+                scores[free[c].i * currentBoard.N + free[c].j] = getOrderingScore(free[c], ply, player);
+            if( queue == null ) {
+                queue = new PriorityQueue<>(Math.max(1, count), new Comparator<MNKCell>() {
+                    @Override
+                    public int compare(MNKCell o1, MNKCell o2) {
+                        int cmp = Long.compare(scores[o1.i * currentBoard.N + o1.j], scores[o2.i * currentBoard.N + o2.j]);
+                        if( cmp == 0 )
+                            cmp = Utils.compare(o1, o2); // make it stable
+                        return cmp;
+                    }
+                }.reversed());
             }
-        };
+        }
+        else if( queue == null ) {
+            queue = new PriorityQueue<>(Math.max(1, count), threatDetectionLogic.getFree().comparator());
+        }
+        candidatesQueues[ply] = queue;
+
+        queue.clear();
+        for (int c = 0; c < count; c++)
+            queue.offer(free[c]); // O(1) in threat priority order, O(log(N*M)) otherwise
+        return queue;
+    }
+
+    /**
+     * Blend the threat priority of the move with the killer moves and the history heuristic.
+     * The threat priority is the most significant part, so a killer move is promoted by {@link #KILLER_MOVE_BONUS} priority points
+     * and a history move by up to 1 point: the forced moves keep coming first, while the cutoff moves win the ties and the near ties.
+     * @param move a free cell
+     * @param ply count of marked cells of the node
+     * @param player index of the player to move
+     * @return the ordering score of the move, the higher the sooner it's searched
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O({@link #KILLER_MOVES_PER_PLY})</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    protected long getOrderingScore(MNKCell move, int ply, int player) {
+        final long priorityPoint = 1L << 16;
+        int cell = move.i * currentBoard.N + move.j;
+        long score = threatDetectionLogic.freeCellsPrioritiesCache[move.i][move.j] * priorityPoint;
+        if( USE_KILLER_MOVES ) {
+            int[] killers = killerMoves[ply];
+            for (int slot = 0; slot < killers.length; slot++) {
+                if( killers[slot] == cell ) {
+                    // the most recent killer first
+                    score += KILLER_MOVE_BONUS * priorityPoint - slot;
+                    break;
+                }
+            }
+        }
+        if( USE_HISTORY_HEURISTIC && maxHistory[player] > 0 )
+            score += history[player][cell] * (priorityPoint - killerMoves[ply].length - 1) / maxHistory[player];
+        return score;
+    }
+
+    /**
+     * Save the move as killer move of the node's ply, and add the squared depth left to its history score
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O({@link #KILLER_MOVES_PER_PLY})</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    @Override
+    protected void onCutoff(MNKCell move, int depth, int depthLeft) {
+        int cell = move.i * currentBoard.N + move.j;
+        if( USE_KILLER_MOVES ) {
+            int[] killers = killerMoves[getSimulatedRound()];
+            int slot = 0;
+            while (slot < killers.length - 1 && killers[slot] != cell)
+                slot++;
+            if( slot < killers.length ) {
+                // shift the older killers, dropping the least recent one or the duplicate
+                System.arraycopy(killers, 0, killers, 1, slot);
+                killers[0] = cell;
+            }
+        }
+        if( USE_HISTORY_HEURISTIC ) {
+            int player = currentBoard.currentPlayer();
+            history[player][cell] += (long) depthLeft * depthLeft;
+            maxHistory[player] = Math.max(maxHistory[player], history[player][cell]);
+        }
     }
 
     protected AlphaBetaOutcome strategyAsFirst() {
@@ -431,6 +1025,12 @@ public class ThreatSearchMoveStrategy extends AlphaBetaPruningSearchMoveStrategy
         // we have to restore last valid state
 
         int validCount = MC.length - (isStateValid() ? 1 : 2);
+        // the board may have searched another line of the game, as the predicted reply of a missed ponder, so keep only the common moves
+        MNKCell[] marked = currentBoard.getMarkedCells();
+        int common = 0;
+        while (common < validCount && common < marked.length && marked[common].i == MC[common].i && marked[common].j == MC[common].j)
+            common++;
+        validCount = common;
 
         // unmark all after the last 2 MC's moves, including the last move at same index on our board
         // this because if (!isStateValid()) then the last our mark hasn't been recorded on our board (same as last opponent mark)
@@ -0,0 +1,508 @@
+package player;
+
+import mnkgame.MNKBoard;
+import mnkgame.MNKCell;
+import mnkgame.MNKCellState;
+
+import java.util.Arrays;
+
+/**
+ * Solver of the forced wins made only of threats, in the style of the threat-space search of
+ * L.V. Allis, H.J. van den Herik, M.P.H. Huntjens: "Go-Moku and Threat-Space Search".
+ * The search considers only the attacker moves that create a threat, and the defender replies that answer it,
+ * so it reaches far deeper forced wins than a full-width search, in a tiny fraction of its nodes.
+ * <ul>
+ *     <li>A <b>four</b> is a move after which the attacker has a cell that completes a line of K:
+ *     the defender must mark that cell, or create a four of its own.</li>
+ *     <li>A <b>three</b> (only if K &ge; 4) is a move after which the attacker has a "double" move, that creates two fours on different cells at once:
+ *     the defender must mark one of the cost cells that remove all the double moves (computed exactly by trying them), or create a four of its own.</li>
+ * </ul>
+ * As in Allis' threat-space search, the defender is assumed to answer a three only with its cost cells or with a four,
+ * so a win through threes is proven under this assumption, while a win through fours only is always exact.
+ *
+ * The board is tracked by the count of marks of each player in each window of K cells, and the windows free of the other player's marks,
+ * with K-1, K-2 and K-3 marks, are indexed, so the threats are found without scanning the whole board.
+ */
+public class ThreatSpaceSearch {
+
+    protected static final int FREE = -1;
+    // levels of the indexed windows: marks count = K-1 - level
+    protected static final int LEVEL_FOUR = 0;
+    protected static final int LEVEL_THREE = 1;
+    protected static final int LEVEL_TWO = 2;
+    protected static final int LEVELS_COUNT = 3;
+
+    protected final int M, N, K;
+    // cells of each window, as i*N+j
+    protected final int[][] windows;
+    // windows that contain each cell
+    protected final int[][] cellWindows;
+    // owner of each cell: player index or FREE
+    protected final int[] board;
+    // marksCount[player][window]
+    protected final int[][] marksCount;
+    // indexed windows, as sets with O(1) add and remove: levelWindows[player][level][0..levelSize-1]
+    protected final int[][][] levelWindows;
+    protected final int[][] levelSize;
+    // levelPosition[player][window] = position of the window in its level set, or -1
+    protected final int[][] levelPosition;
+    protected final int[][] windowLevel;
+
+    // distinct cells are collected by stamping them, with a stamp array for each kind of collection
+    protected final int[] listStamps, winStamps, doubleStamps;
+    protected int listStamp, winStamp, doubleStamp;
+    // moves buffers of each ply
+    protected int[][] plyMoves;
+
+    protected int attacker, defender;
+    protected int[] line;
+    protected int lineLength;
+    protected long nodes, maxNodes;
+    protected long endTime;
+    protected boolean isAborted;
+    // the threes are searched only after the fours, with an increasing max ply
+    protected boolean isThreesAllowed;
+    protected int maxPly;
+    protected boolean isDepthCut;
+
+    /**
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(M*N*K)</code></li>
+     *      <li>Space: <code>O(M*N*K)</code></li>
+     * </ul>
+     */
+    public ThreatSpaceSearch(int M, int N, int K) {
+        this.M = M;
+        this.N = N;
+        this.K = K;
+        windows = newWindows(M, N, K);
+        cellWindows = newCellWindows(windows, M * N);
+
+        board = new int[M * N];
+        marksCount = new int[2][windows.length];
+        levelWindows = new int[2][LEVELS_COUNT][windows.length];
+        levelSize = new int[2][LEVELS_COUNT];
+        levelPosition = new int[2][windows.length];
+        windowLevel = new int[2][windows.length];
+        listStamps = new int[M * N];
+        winStamps = new int[M * N];
+        doubleStamps = new int[M * N];
+        plyMoves = new int[M * N + 1][];
+        line = new int[M * N + 1];
+    }
+
+    /**
+     * @return the cells of all the lines of K cells of the board, as i*N+j
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(M*N*K)</code></li>
+     *      <li>Space: <code>O(M*N*K)</code></li>
+     * </ul>
+     */
+    protected static int[][] newWindows(int M, int N, int K) {
+        final int[][] directions = { {0, 1}, {1, 0}, {1, 1}, {1, -1} };
+
+        int windowsCount = 0;
+        int[][] allWindows = new int[4 * M * N][];
+        for (int[] direction : directions) {
+            for (int i = 0; i < M; i++) {
+                for (int j = 0; j < N; j++) {
+                    int lastI = i + (K - 1) * direction[0], lastJ = j + (K - 1) * direction[1];
+                    if( lastI < 0 || lastI >= M || lastJ < 0 || lastJ >= N )
+                        continue;
+                    int[] window = new int[K];
+                    for (int c = 0; c < K; c++)
+                        window[c] = (i + c * direction[0]) * N + (j + c * direction[1]);
+                    allWindows[windowsCount++] = window;
+                }
+            }
+        }
+        return Arrays.copyOf(allWindows, windowsCount);
+    }
+
+    /**
+     * @param windows the windows of {@link #newWindows}
+     * @param cellsCount M*N
+     * @return the indexes of the windows that contain each cell
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(M*N*K)</code></li>
+     *      <li>Space: <code>O(M*N*K)</code></li>
+     * </ul>
+     */
+    protected static int[][] newCellWindows(int[][] windows, int cellsCount) {
+        int[] cellWindowsCount = new int[cellsCount];
+        for (int[] window : windows) {
+            for (int cell : window)
+                cellWindowsCount[cell]++;
+        }
+        int[][] cellWindows = new int[cellsCount][];
+        for (int cell = 0; cell < cellsCount; cell++)
+            cellWindows[cell] = new int[cellWindowsCount[cell]];
+        int[] filled = new int[cellsCount];
+        for (int w = 0; w < windows.length; w++) {
+            for (int cell : windows[w])
+                cellWindows[cell][filled[cell]++] = w;
+        }
+        return cellWindows;
+    }
+
+    /**
+     * Load the marked cells of the board
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(M*N*K)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    public void load(MNKBoard source) {
+        for (int p = 0; p < 2; p++) {
+            Arrays.fill(marksCount[p], 0);
+            Arrays.fill(levelPosition[p], -1);
+            Arrays.fill(windowLevel[p], -1);
+            Arrays.fill(levelSize[p], 0);
+        }
+        Arrays.fill(board, FREE);
+        for (int w = 0; w < windows.length; w++) {
+            for (int p = 0; p < 2; p++)
+                updateLevel(p, w);
+        }
+        for (int i = 0; i < M; i++) {
+            for (int j = 0; j < N; j++) {
+                MNKCellState state = source.cellState(i, j);
+                if( state != MNKCellState.FREE )
+                    mark(i * N + j, Utils.getPlayerIndex(state));
+            }
+        }
+    }
+
+    /**
+     * Search a forced win of the player to move, made only of threats
+     * @param player index of the attacker, that is the player to move
+     * @param maxNodes max count of nodes to search
+     * @param endTime time in milliseconds when the search is aborted
+     * @return the winning line, alternating the attacker moves and the defender replies,
+     * ending with the winning move or with a three that can't be defended;
+     * or null if there isn't a forced win of threats, or it hasn't been found within the limits
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O( min(maxNodes, b^d) * W )</code> where b is the count of threats and replies per node,
+     *      d the length of the forcing lines, and W the count of windows near a cell</li>
+     *      <li>Space: <code>O(M*N * d)</code></li>
+     * </ul>
+     */
+    public MNKCell[] solve(int player, long maxNodes, long endTime) {
+        this.attacker = player;
+        this.defender = 1 - player;
+        this.maxNodes = maxNodes;
+        this.endTime = endTime;
+        nodes = 0;
+        lineLength = 0;
+        isAborted = false;
+
+        // the fours only search is narrow, so it's searched without depth limits first
+        isThreesAllowed = false;
+        maxPly = M * N;
+        boolean isWin = attack(0);
+        isThreesAllowed = K >= 4;
+        isDepthCut = true;
+        for (maxPly = 3; !isWin && isThreesAllowed && isDepthCut && !isAborted && maxPly <= M * N; maxPly += 2) {
+            isDepthCut = false;
+            isWin = attack(0);
+        }
+        if( !isWin )
+            return null;
+        MNKCell[] result = new MNKCell[lineLength];
+        for (int ply = 0; ply < lineLength; ply++)
+            result[ply] = new MNKCell(line[ply] / N, line[ply] % N);
+        return result;
+    }
+
+    /**
+     * @return count of nodes searched by last {@link #solve}
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return true if the last {@link #solve} has been stopped by its limits
+     */
+    public boolean isAborted() {
+        return isAborted;
+    }
+
+    protected void mark(int cell, int player) {
+        board[cell] = player;
+        for (int w : cellWindows[cell]) {
+            marksCount[player][w]++;
+            updateLevel(0, w);
+            updateLevel(1, w);
+        }
+    }
+
+    protected void unMark(int cell) {
+        int player = board[cell];
+        board[cell] = FREE;
+        for (int w : cellWindows[cell]) {
+            marksCount[player][w]--;
+            updateLevel(0, w);
+            updateLevel(1, w);
+        }
+    }
+
+    /**
+     * Move the window in the level set of the player given by its marks count
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(1)</code></li>
+     * </ul>
+     */
+    protected void updateLevel(int player, int w) {
+        int level = marksCount[1 - player][w] > 0 ? -1 : K - 1 - marksCount[player][w];
+        if( level >= LEVELS_COUNT || K - 1 - level <= 0 )
+            level = -1;
+        int oldLevel = windowLevel[player][w];
+        if( oldLevel == level )
+            return;
+        if( oldLevel >= 0 ) {
+            int position = levelPosition[player][w];
+            int last = levelWindows[player][oldLevel][--levelSize[player][oldLevel]];
+            levelWindows[player][oldLevel][position] = last;
+            levelPosition[player][last] = position;
+            levelPosition[player][w] = -1;
+        }
+        if( level >= 0 ) {
+            levelPosition[player][w] = levelSize[player][level];
+            levelWindows[player][level][levelSize[player][level]++] = w;
+        }
+        windowLevel[player][w] = level;
+    }
+
+    protected int[] getPlyMoves(int ply) {
+        if( plyMoves[ply] == null )
+            plyMoves[ply] = new int[M * N];
+        return plyMoves[ply];
+    }
+
+    /**
+     * @return true if the limits of the search have been reached
+     */
+    protected boolean checkLimits() {
+        if( !isAborted && (++nodes > maxNodes || ((nodes & 1023) == 0 && System.currentTimeMillis() >= endTime)) )
+            isAborted = true;
+        return isAborted;
+    }
+
+    /**
+     * Add to moves the free cells of the player's windows at the level, that aren't in the list yet.
+     * Call {@link #newList()} before the first add to a new list
+     * @return the new count of moves
+     */
+    protected int addLevelCells(int player, int level, int[] moves, int count) {
+        for (int index = 0; index < levelSize[player][level]; index++) {
+            for (int cell : windows[levelWindows[player][level][index]]) {
+                if( board[cell] == FREE && listStamps[cell] != listStamp ) {
+                    listStamps[cell] = listStamp;
+                    moves[count++] = cell;
+                }
+            }
+        }
+        return count;
+    }
+
+    protected void newList() {
+        listStamp++;
+    }
+
+    /**
+     * @return a cell where the player completes a line of K, or -1
+     */
+    protected int findWinCell(int player) {
+        if( levelSize[player][LEVEL_FOUR] == 0 )
+            return -1;
+        for (int cell : windows[levelWindows[player][LEVEL_FOUR][0]]) {
+            if( board[cell] == FREE )
+                return cell;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the count of distinct cells where the player completes a line of K
+     */
+    protected int countWinCells(int player) {
+        winStamp++;
+        int count = 0;
+        for (int index = 0; index < levelSize[player][LEVEL_FOUR]; index++) {
+            for (int cell : windows[levelWindows[player][LEVEL_FOUR][index]]) {
+                if( board[cell] == FREE && winStamps[cell] != winStamp ) {
+                    winStamps[cell] = winStamp;
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return true if the free cell creates at least 2 distinct win cells for the player
+     */
+    protected boolean isDoubleMove(int player, int cell) {
+        doubleStamp++;
+        int winCells = 0;
+        for (int w : cellWindows[cell]) {
+            if( windowLevel[player][w] != LEVEL_THREE )
+                continue;
+            for (int other : windows[w]) {
+                if( other != cell && board[other] == FREE && doubleStamps[other] != doubleStamp ) {
+                    doubleStamps[other] = doubleStamp;
+                    if( ++winCells >= 2 )
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the player has a move that creates at least 2 distinct win cells
+     */
+    protected boolean hasDoubleMove(int player) {
+        for (int index = 0; index < levelSize[player][LEVEL_THREE]; index++) {
+            for (int cell : windows[levelWindows[player][LEVEL_THREE][index]]) {
+                if( board[cell] == FREE && isDoubleMove(player, cell) )
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * OR node: the attacker is to move
+     * @return true if the attacker has a forced win of threats
+     */
+    protected boolean attack(int ply) {
+        if( checkLimits() )
+            return false;
+
+        int winCell = findWinCell(attacker);
+        if( winCell >= 0 ) {
+            line[ply] = winCell;
+            lineLength = ply + 1;
+            return true;
+        }
+        if( ply + 1 >= maxPly ) {
+            isDepthCut = true;
+            return false;
+        }
+
+        int[] moves = getPlyMoves(ply);
+        int count;
+        int defenderWinCells = countWinCells(defender);
+        if( defenderWinCells >= 2 ) {
+            return false;
+        }
+        else if( defenderWinCells == 1 ) {
+            // the block is forced, and the attack goes on only if it's a threat too
+            moves[0] = findWinCell(defender);
+            count = 1;
+        }
+        else {
+            newList();
+            count = addLevelCells(attacker, LEVEL_THREE, moves, 0);
+            int foursCount = count;
+            if( isThreesAllowed ) {
+                count = addLevelCells(attacker, LEVEL_TWO, moves, count);
+                // keep only the moves that create a three
+                int threesCount = foursCount;
+                for (int index = foursCount; index < count; index++) {
+                    mark(moves[index], attacker);
+                    if( hasDoubleMove(attacker) )
+                        moves[threesCount++] = moves[index];
+                    unMark(moves[index]);
+                }
+                count = threesCount;
+            }
+        }
+
+        for (int index = 0; index < count; index++) {
+            int move = moves[index];
+            mark(move, attacker);
+            boolean isWin = (countWinCells(attacker) > 0 || (isThreesAllowed && hasDoubleMove(attacker))) && defend(ply + 1);
+            unMark(move);
+            if( isWin ) {
+                line[ply] = move;
+                return true;
+            }
+            if( isAborted )
+                return false;
+        }
+        return false;
+    }
+
+    /**
+     * AND node: the defender is to move, and must answer the threat of the last attacker move
+     * @return true if the attacker wins against all the replies
+     */
+    protected boolean defend(int ply) {
+        if( checkLimits() )
+            return false;
+        if( findWinCell(defender) >= 0 )
+            return false;
+
+        int[] moves = getPlyMoves(ply);
+        int count;
+        newList();
+        if( levelSize[attacker][LEVEL_FOUR] > 0 ) {
+            // block the four
+            count = addLevelCells(attacker, LEVEL_FOUR, moves, 0);
+        }
+        else {
+            // cost cells of the three: the double moves and the cells of their windows
+            count = 0;
+            for (int index = 0; index < levelSize[attacker][LEVEL_THREE]; index++) {
+                for (int cell : windows[levelWindows[attacker][LEVEL_THREE][index]]) {
+                    if( board[cell] == FREE && isDoubleMove(attacker, cell) ) {
+                        for (int w : cellWindows[cell]) {
+                            if( windowLevel[attacker][w] != LEVEL_THREE )
+                                continue;
+                            for (int costCell : windows[w]) {
+                                if( board[costCell] == FREE && listStamps[costCell] != listStamp ) {
+                                    listStamps[costCell] = listStamp;
+                                    moves[count++] = costCell;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            // keep only the cost cells that remove all the double moves
+            int defensesCount = 0;
+            for (int index = 0; index < count; index++) {
+                mark(moves[index], defender);
+                if( !hasDoubleMove(attacker) )
+                    moves[defensesCount++] = moves[index];
+                unMark(moves[index]);
+            }
+            count = defensesCount;
+            // the discarded cells can still be counter fours
+            newList();
+            for (int index = 0; index < count; index++)
+                listStamps[moves[index]] = listStamp;
+        }
+        // counter fours
+        count = addLevelCells(defender, LEVEL_THREE, moves, count);
+
+        // a three without defenses
+        if( count == 0 )
+            lineLength = ply;
+
+        for (int index = 0; index < count; index++) {
+            int move = moves[index];
+            mark(move, defender);
+            boolean isWin = attack(ply + 1);
+            unMark(move);
+            if( !isWin )
+                return false;
+            // the line follows the last reply, as its moves are the last ones written
+            line[ply] = move;
+        }
+        return true;
+    }
+}
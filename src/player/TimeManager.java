@@ -0,0 +1,138 @@
+package player;
+
+/**
+ * Time budget of the iterative deepening of each move, adapted to the measures of the previous iterations and moves:
+ * <ul>
+ *     <li>the search ends {@link #getSafetyMargin()} before the timeout, where the margin is proportional to the exit latency learned
+ *     on the previous moves, that is the time from the moment the search notices the end of its time to the moment it returns</li>
+ *     <li>the next iteration starts only if its predicted time fits the time left, where the prediction is the time of the last iteration
+ *     multiplied by the effective branching factor, measured as the ratio between the nodes of the last two iterations</li>
+ * </ul>
+ */
+public class TimeManager {
+
+    /**
+     * Multiplier of the learned exit latency in the safety margin
+     */
+    public float EXIT_LATENCY_SAFETY_FACTOR = 2f;
+    /**
+     * Weight of the learned exit latency when a lower latency is measured:
+     * the learned latency holds the peaks, as the garbage collections, and decays slowly toward the recent measures
+     */
+    public float EXIT_LATENCY_DECAY = 0.9f;
+    /**
+     * Min safety margin, as ratio of the timeout
+     */
+    public float MIN_SAFETY_MARGIN_RATIO = 0.02f;
+    /**
+     * Effective branching factor used until two iterations of the move have been measured
+     */
+    public float DEFAULT_BRANCHING_FACTOR = 4f;
+    /**
+     * Max effective branching factor, as the shallow iterations have too few nodes to be measured reliably
+     */
+    public float MAX_BRANCHING_FACTOR = 64f;
+
+    protected final long timeout;
+    // learned exit latency, in ms
+    protected float exitLatency;
+
+    protected long iterationStartTime;
+    protected long iterationStartNodes;
+    // measures of the last two completed iterations of the current move, or 0 if not completed
+    protected long lastIterationTime;
+    protected long lastIterationNodes;
+    protected long previousIterationNodes;
+
+    /**
+     * @param timeout the time of each move, in ms
+     * @param initialExitLatencyRatio the exit latency assumed until the first measure, as ratio of the timeout
+     */
+    public TimeManager(long timeout, float initialExitLatencyRatio) {
+        this.timeout = timeout;
+        this.exitLatency = initialExitLatencyRatio * timeout;
+    }
+
+    /**
+     * Start the budget of a move
+     * @param realEndTime the time the move must be returned by
+     * @return the time the search should end by
+     */
+    public long startMove(long realEndTime) {
+        lastIterationTime = 0;
+        lastIterationNodes = 0;
+        previousIterationNodes = 0;
+        return realEndTime - getSafetyMargin();
+    }
+
+    /**
+     * @param now current time
+     * @param nodes nodes count of the search when the iteration starts
+     */
+    public void startIteration(long now, long nodes) {
+        iterationStartTime = now;
+        iterationStartNodes = nodes;
+    }
+
+    /**
+     * Measure a completed iteration
+     * @param now current time
+     * @param nodes nodes count of the search when the iteration ends
+     */
+    public void endIteration(long now, long nodes) {
+        previousIterationNodes = lastIterationNodes;
+        lastIterationNodes = nodes - iterationStartNodes;
+        lastIterationTime = now - iterationStartTime;
+    }
+
+    /**
+     * Learn the exit latency of a move
+     * @param exitStartTime the time the search noticed the end of its time
+     * @param endTime the time the search ended
+     * @param isOutOfTime true if the search has been interrupted by the end of its time, otherwise there isn't any latency to measure
+     */
+    public void endMove(long exitStartTime, long endTime, boolean isOutOfTime) {
+        if( isOutOfTime )
+            exitLatency = Math.max(endTime - exitStartTime, exitLatency * EXIT_LATENCY_DECAY);
+    }
+
+    /**
+     * @return the time between the end of the search and the timeout
+     */
+    public long getSafetyMargin() {
+        return (long) Math.max(MIN_SAFETY_MARGIN_RATIO * timeout, EXIT_LATENCY_SAFETY_FACTOR * exitLatency);
+    }
+
+    /**
+     * @return the ratio between the nodes of the last two completed iterations, or {@link #DEFAULT_BRANCHING_FACTOR} if they aren't measured
+     */
+    public float getBranchingFactor() {
+        if( previousIterationNodes <= 0 || lastIterationNodes <= 0 )
+            return DEFAULT_BRANCHING_FACTOR;
+        return Math.max(1f, Math.min(MAX_BRANCHING_FACTOR, (float) lastIterationNodes / previousIterationNodes));
+    }
+
+    /**
+     * @return the predicted time of the next iteration, or 0 if no iteration has been completed
+     */
+    public long predictNextIterationTime() {
+        return (long) Math.ceil(lastIterationTime * getBranchingFactor());
+    }
+
+    /**
+     * @param now current time
+     * @param endTime the time the search should end by
+     * @return true if the next iteration is predicted to complete by endTime
+     */
+    public boolean canStartIteration(long now, long endTime) {
+        return now + predictNextIterationTime() <= endTime;
+    }
+
+    @Override
+    public String toString() {
+        return "exit latency (ms): " + exitLatency
+                + "; safety margin (ms): " + getSafetyMargin()
+                + "; last iteration: " + lastIterationNodes + " nodes, " + lastIterationTime + " ms"
+                + "; branching factor: " + getBranchingFactor();
+    }
+}
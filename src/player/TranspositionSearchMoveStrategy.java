@@ -1,110 +1,478 @@
 package player;
 
 import mnkgame.MNKCell;
+import mnkgame.MNKCellState;
+import mnkgame.MNKGameState;
 
-import java.math.BigInteger;
-import java.util.HashMap;
-import java.util.TreeMap;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
- * This class assign a transposition table for each bucket.
- * The max buckets count is n = M * N.
- * Each bucket contains all possible tree's nodes states per round (tree's depth).
- * The k-th bucket could have up to n!/(n-k)! evaluated nodes (called "Transposition"). ( k=1: n; k=2: n(n-1); ...; k=n: n! )-
- * This class implements an optimization: removes unnecessary buckets so free up memory.
- *
- * On round k, the  k-1 buckets, which store the old transpositions, are useless.
- * So the (k-1)-th bucket will be removed
- * on {@link #postSearch()} if {@link #isStateValid()} == false
- * or on {@link #restore} otherwise
+ * This class stores the evaluated nodes (called "Transposition") in a fixed capacity {@link TranspositionTable}.
+ * Each transposition is identified by the canonical zobrist key of its board state, that already distinguish the states of different rounds,
+ * so a single table is shared by all tree's depths, and by all symmetric states (see {@link ZobristHashableBoardState}).
+ * On each {@link #initSearch} the table starts a new generation, so the transpositions of previous rounds are kept
+ * while they are useful, and are evicted lazily when newer ones require their slots.
  */
 public class TranspositionSearchMoveStrategy extends IterativeDeepeningSearchMoveStrategy {
 
-    protected HashableBoardState currentState;
+    protected ZobristHashableBoardState currentState;
     protected Utils.MatrixRowMap matrixMap;
-    protected TreeMap<Integer, HashMap<BigInteger, TranspositionData>> transpositionsMap;
-    protected int currentTableSize;
-    protected int maxTableSize = 1 << 20; // fixed
+    protected TranspositionTable transpositionTable;
+    /**
+     * Max memory in megabytes used by the transposition table
+     */
+    public int TRANSPOSITION_TABLE_SIZE_MB = 64;
+    /**
+     * If true, the transposition table is stored off heap, so its size doesn't increase the garbage collection time,
+     * and is sized by {@link #OFF_HEAP_TRANSPOSITION_TABLE_SIZE} instead of {@link #TRANSPOSITION_TABLE_SIZE_MB}
+     */
+    public boolean USE_OFF_HEAP_TRANSPOSITION_TABLE = false;
+    /**
+     * Max memory in bytes used by the off heap transposition table
+     */
+    public long OFF_HEAP_TRANSPOSITION_TABLE_SIZE = 1L << 30;
+    /**
+     * If true, the transposition table is a {@link ConcurrentTranspositionTable} of {@link #TRANSPOSITION_TABLE_SIZE_MB},
+     * so its views can be shared with other threads searching the same game
+     */
+    public boolean USE_CONCURRENT_TRANSPOSITION_TABLE = false;
+    /**
+     * Count of helper threads of the Lazy SMP mode, or 0 to search only on the caller thread.
+     * If greater than 0, the transposition table is a {@link ConcurrentTranspositionTable} shared with the helpers,
+     * see {@link LazySMPHelperSearchMoveStrategy}
+     */
+    public int LAZY_SMP_HELPERS = 0;
+    protected LazySMPHelperSearchMoveStrategy[] helpers;
+    protected ExecutorService helpersExecutor;
+    /**
+     * If true, after each move a helper keeps searching on its own thread, while the opponent is thinking,
+     * the position reached by the opponent reply predicted by the last search, see {@link #startPondering()}.
+     * The next {@link #initSearch} stops it: on a ponder hit the search finds the ponderer's transpositions in the shared table,
+     * so the transposition table is a {@link ConcurrentTranspositionTable}
+     */
+    public boolean USE_PONDERING = false;
+    protected LazySMPHelperSearchMoveStrategy ponderer;
+    protected ExecutorService pondererExecutor;
+    protected Future<AlphaBetaOutcome> ponderResult;
+    // marked cells of the position searched by the ponderer, ending with the predicted reply
+    protected MNKCell[] ponderMC;
+    protected int ponderHits;
+    protected int ponderMisses;
+
+    public static final String DEFAULT_OPENING_BOOK_DIRECTORY = "books";
+    /**
+     * If true, the positions in the opening book of the game configuration, if any, are answered by the book without searching.
+     * See {@link OpeningBookGenerator}
+     */
+    public boolean USE_OPENING_BOOK = true;
+    public String OPENING_BOOK_DIRECTORY = DEFAULT_OPENING_BOOK_DIRECTORY;
+    protected OpeningBook openingBook;
+    /**
+     * If true, a second independent zobrist key is stored with each transposition, so key collisions are detected
+     */
+    public boolean USE_HASH_VERIFICATION_KEY = true;
+    /**
+     * If true, all symmetric states share the same transposition, identified by their canonical zobrist key,
+     * and the stored best move is mapped back through the symmetry of the looked up state
+     */
+    public boolean USE_SYMMETRIC_HASHING = true;
+    /**
+     * If true, the usage of the transposition table is counted in {@link #getTranspositionStats()}
+     */
+    public boolean USE_TRANSPOSITION_TABLE_STATS = true;
+    protected TranspositionTableStats transpositionStats;
+    /**
+     * If true, the move stored in the transposition of a node is searched before the other candidates,
+     * also when the transposition isn't deep enough for a cutoff, see {@link #getFirstCandidate()}.
+     * The root, that isn't looked up in the table, searches first the best move of the previous iteration
+     */
+    public boolean USE_HASH_MOVE_FIRST = true;
+    // hashMoves[ply] = array index of the move stored for the last node probed at that ply, or NO_MOVE
+    protected int[] hashMoves;
+    // best move of the last completed root search of the round
+    protected MNKCell rootBestMove;
 
     @Override
     public void init(int M, int N, int K, boolean first, int timeout_in_secs) {
         super.init(M, N, K, first, timeout_in_secs);
 
-        currentTableSize = (M * N);
-
         matrixMap = new Utils.MatrixRowMap(M, N);
-        currentState = new HashableBoardState();
-        transpositionsMap = new TreeMap<>(Integer::compare);
+        currentState = new ZobristHashableBoardState(M, N, USE_HASH_VERIFICATION_KEY, USE_SYMMETRIC_HASHING);
+        transpositionTable = createTranspositionTable();
+
+        transpositionStats = USE_TRANSPOSITION_TABLE_STATS ? new TranspositionTableStats(M * N) : null;
+        transpositionTable.setStats(transpositionStats);
+
+        openingBook = USE_OPENING_BOOK ? OpeningBook.load(OPENING_BOOK_DIRECTORY, M, N, K) : null;
 
-        final int initialTablesCountToInit = M * N;
-        for( int round = 1; round <= initialTablesCountToInit; round++ )
-            initTranspositionTableForRoundIfAbsent( round );
+        hashMoves = new int[M * N + 1];
+        Arrays.fill(hashMoves, TranspositionTable.NO_MOVE);
+
+        if( LAZY_SMP_HELPERS > 0 )
+            initHelpers(M, N, K, first, timeout_in_secs);
+        if( USE_PONDERING )
+            initPonderer(M, N, K, first, timeout_in_secs);
+    }
+
+    /**
+     * @return the transposition table selected by the configuration flags
+     */
+    protected TranspositionTable createTranspositionTable() {
+        if( USE_CONCURRENT_TRANSPOSITION_TABLE || LAZY_SMP_HELPERS > 0 || USE_PONDERING )
+            return new ConcurrentTranspositionTable(TRANSPOSITION_TABLE_SIZE_MB, USE_HASH_VERIFICATION_KEY);
+        else if( USE_OFF_HEAP_TRANSPOSITION_TABLE )
+            return new OffHeapTranspositionTable(OFF_HEAP_TRANSPOSITION_TABLE_SIZE, USE_HASH_VERIFICATION_KEY);
+        else
+            return new ArrayTranspositionTable(TRANSPOSITION_TABLE_SIZE_MB, USE_HASH_VERIFICATION_KEY);
     }
 
     /**
-     * Return the k-th transposition table associated to the k-th bucket, relative to k-th round.
-     * If doesn't exists, then this will create and assign it first with a starting capacity.
+     * Init the helpers of the Lazy SMP mode, with their own board and threat detection replicas,
+     * sharing the transposition table of this strategy
      * @implNote Cost <ul>
-     *      <li>Time: <code>T(#{@link TreeMap#get})=</code>
-     *      <ul>
-     *          <li><code>O( log( M*N-{@link #round}) ) = O({@link #maxDepthSearch})</code> if {@link #flushTranspositionTable()} is called before the next {@link #alphaBetaPruning} call</li>
-     *          <li><code>O( log( M*N ) )</code> otherwise</li>
-     *      </ul>
-     *      </li>
+     *      <li>Time: <code>O( H * M*N )</code> where H = {@link #LAZY_SMP_HELPERS}</li>
+     *      <li>Space: <code>O( H * M*N )</code></li>
      * </ul>
-     * @see IterativeDeepeningSearchMoveStrategy#initSearch
-     * @return The k-th transposition table
      */
-    protected HashMap<BigInteger, TranspositionData> getTranspositionTable() {
-        return initTranspositionTableForRoundIfAbsent(getSimulatedRound());
+    protected void initHelpers(int M, int N, int K, boolean first, int timeout_in_secs) {
+        helpers = new LazySMPHelperSearchMoveStrategy[LAZY_SMP_HELPERS];
+        for (int h = 0; h < helpers.length; h++) {
+            helpers[h] = new LazySMPHelperSearchMoveStrategy(h + 1, (ConcurrentTranspositionTable) transpositionTable);
+            helpers[h].USE_HASH_VERIFICATION_KEY = USE_HASH_VERIFICATION_KEY;
+            helpers[h].USE_SYMMETRIC_HASHING = USE_SYMMETRIC_HASHING;
+            helpers[h].init(M, N, K, first, timeout_in_secs);
+        }
+        helpersExecutor = Executors.newFixedThreadPool(helpers.length, runnable -> {
+            Thread thread = new Thread(runnable, "lazy-smp-helper");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
-    private HashMap<BigInteger, TranspositionData> initTranspositionTableForRoundIfAbsent( int round ) {
-        final int movesLeft = (currentBoard.M * currentBoard.N) - round;
-        return transpositionsMap.computeIfAbsent(round, age -> {
-            // limit table size growing // n * (n-1)! ... up to maxTableSize
-            if( currentTableSize < maxTableSize ) {
-                try {
-                    currentTableSize = Math.multiplyExact(currentTableSize, movesLeft);
-                    if( currentTableSize > maxTableSize ) currentTableSize = maxTableSize;
-                }
-                catch (ArithmeticException ex) {
-                    currentTableSize = maxTableSize;
-                }
-                return new HashMap<>(currentTableSize+1, 1);
-            }
-            else {
-                return new HashMap<>(maxTableSize+1, 1);
-            }
+    /**
+     * Init the ponderer, with its own board and threat detection replicas, sharing the transposition table of this strategy
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(M*N)</code></li>
+     *      <li>Space: <code>O(M*N)</code></li>
+     * </ul>
+     */
+    protected void initPonderer(int M, int N, int K, boolean first, int timeout_in_secs) {
+        ponderer = new LazySMPHelperSearchMoveStrategy(0, (ConcurrentTranspositionTable) transpositionTable);
+        ponderer.USE_HASH_VERIFICATION_KEY = USE_HASH_VERIFICATION_KEY;
+        ponderer.USE_SYMMETRIC_HASHING = USE_SYMMETRIC_HASHING;
+        ponderer.init(M, N, K, first, timeout_in_secs);
+        pondererExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ponderer");
+            thread.setDaemon(true);
+            return thread;
         });
+        ponderHits = 0;
+        ponderMisses = 0;
+    }
+
+    /**
+     * Start the ponderer on the position reached by the predicted opponent reply, if any, see {@link #getPredictedReply()}.
+     * It runs until the next {@link #initSearch}, or until its own timeout,
+     * on a new generation of the table that the next search keeps on a ponder hit
+     * @PreCondition the move of the last search has been marked
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(M*N)</code></li>
+     *      <li>Space: <code>O(M*N)</code></li>
+     * </ul>
+     */
+    protected void startPondering() {
+        MNKCell reply = getPredictedReply();
+        if( reply == null )
+            return;
+
+        MNKCell[] MC = currentBoard.getMarkedCells();
+        MNKCell[] FC = currentBoard.getFreeCells();
+        MNKCell[] ponderFC = new MNKCell[FC.length - 1];
+        int f = 0;
+        for (MNKCell cell : FC) {
+            if( cell.i != reply.i || cell.j != reply.j )
+                ponderFC[f++] = cell;
+        }
+        ponderMC = Arrays.copyOf(MC, MC.length + 1);
+        ponderMC[MC.length] = new MNKCell(reply.i, reply.j, Utils.getPlayerMark(currentBoard.currentPlayer()));
+
+        MNKCell[] ponderPositionMC = ponderMC;
+        // while no other thread is searching
+        newTranspositionSearch();
+        ponderResult = pondererExecutor.submit(() -> ponderer.searchHelper(ponderFC, ponderPositionMC));
+        if( DEBUG_SHOW_INFO )
+            Debug.println("Pondering on predicted reply " + reply);
+    }
+
+    /**
+     * @return the opponent reply to the last marked move, that is the move stored in the transposition of the current state,
+     * or else the second move of the principal variation of the last search if it starts with the last marked move;
+     * null if there isn't one
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(M*N)</code></li>
+     *      <li>Space: <code>O(M*N)</code></li>
+     * </ul>
+     */
+    protected MNKCell getPredictedReply() {
+        if( !isStateValid() || lastResult == null || lastResult.move == null )
+            return null;
+
+        MNKCell reply = null;
+        int moveIndex = getHashMove(transpositionTable.probe(currentState.getCanonicalKey(), currentState.getCanonicalVerificationKey()));
+        if( moveIndex != TranspositionTable.NO_MOVE )
+            reply = cellsByIndex[moveIndex];
+        else {
+            MNKCell[] principalVariation = getPrincipalVariation(0);
+            if( principalVariation.length > 1 && principalVariation[0].i == lastResult.move.i && principalVariation[0].j == lastResult.move.j )
+                reply = principalVariation[1];
+        }
+        return reply != null && currentBoard.cellState(reply.i, reply.j) == MNKCellState.FREE ? reply : null;
+    }
+
+    /**
+     * Stop the ponderer, if running, and wait its end, so it never searches along with this strategy
+     * @return the outcome of the ponderer, or null if it wasn't running
+     */
+    protected AlphaBetaOutcome cancelPondering() {
+        if( ponderResult == null )
+            return null;
+
+        AlphaBetaOutcome outcome = null;
+        ponderer.stop();
+        try {
+            outcome = ponderResult.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            if( DEBUG_SHOW_INFO )
+                Debug.println(Utils.ConsoleColors.RED + "Ponderer failed: " + e.getCause() + Utils.ConsoleColors.RESET);
+        }
+        ponderResult = null;
+        return outcome;
     }
 
     /**
-     * Clear, remove and free up the transposition table associated up to the k-th bucket, relative to the real k-th round
-     * @PreCondition: {{@link #isStateValid()}} must be true before calling this
+     * Stop the ponderer, and on a ponder hit set its best move as the first root move of the next search
+     * @param MC marked cells of the game
+     * @return true on a ponder hit
      * @implNote Cost <ul>
-     *      <li>Time: <code>T(max { {@link TreeMap#headMap}, {@link TreeMap#remove} }) = O( log( M*N ) )</code></li>
+     *      <li>Time: <code>O(M*N)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
      * </ul>
      */
-    protected void flushTranspositionTable() {
-        transpositionsMap.headMap(round, true).clear();
+    protected boolean stopPondering(MNKCell[] MC) {
+        if( ponderResult == null )
+            return false;
+        AlphaBetaOutcome outcome = cancelPondering();
+
+        boolean isPonderHit = ponderMC.length == MC.length;
+        for (int m = 0; isPonderHit && m < MC.length; m++)
+            isPonderHit = ponderMC[m].i == MC[m].i && ponderMC[m].j == MC[m].j;
+        if( isPonderHit )
+            ponderHits++;
+        else
+            ponderMisses++;
+        if( DEBUG_SHOW_INFO )
+            Debug.println("Ponder " + (isPonderHit ? "hit" : "miss") + ", completed depth " + ponderer.lastCompletedDepth);
+
+        if( isPonderHit && outcome != null && outcome.move != null && ponderer.lastCompletedDepth > 0
+            && currentBoard.cellState(outcome.move.i, outcome.move.j) == MNKCellState.FREE ) {
+            rootBestMove = cellsByIndex[ matrixMap.getArrayIndexFromMatrixIndexes(outcome.move.i, outcome.move.j) ];
+        }
+        return isPonderHit;
+    }
+
+    /**
+     * @param slot a slot returned by {@link TranspositionTable#probe}
+     * @return the packed score of the transposition at the provided slot of {@link #transpositionTable}
+     */
+    protected long loadTranspositionScore(int slot) {
+        return AlphaBetaOutcome.pack(
+                transpositionTable.getEval(slot),
+                transpositionTable.getOutcomeDepth(slot),
+                transpositionTable.getState(slot)
+        );
+    }
+
+    /**
+     * @param score the packed score of the current state
+     * @param moveIndex array coordinate of the best move of the current state, or {@link #NO_MOVE}
+     * @param depthLeft the depth searched from the current state
+     * @param type the bound type of the score
+     */
+    protected void storeTransposition(long score, int moveIndex, int depthLeft, TranspositionData.ValueType type) {
+        transpositionTable.store(
+                currentState.getCanonicalKey(),
+                currentState.getCanonicalVerificationKey(),
+                AlphaBetaOutcome.getEval(score),
+                depthLeft,
+                type,
+                AlphaBetaOutcome.getState(score),
+                moveIndex != NO_MOVE ? currentState.toCanonicalCell(moveIndex) : TranspositionTable.NO_MOVE,
+                AlphaBetaOutcome.getDepth(score)
+        );
     }
 
     @Override
     public void initSearch(MNKCell[] FC, MNKCell[] MC) {
         super.initSearch(FC, MC);
 
-        flushTranspositionTable();
+        rootBestMove = null;
+        // after the start time of the search, so the stop latency is within its time budget,
+        // and before the new generation of the table, that must be started while no other thread is searching
+        boolean isPonderHit = stopPondering(MC);
+        // on a ponder hit the generation started by the ponderer is the one of this search, so its transpositions aren't stale
+        if( !isPonderHit )
+            newTranspositionSearch();
+        if( transpositionStats != null )
+            transpositionStats.newRound(currentBoard.getMarkedCellsCount());
+    }
+
+    /**
+     * Start a new search on the transposition table, so its replacement policy prefers the transpositions of this search
+     */
+    protected void newTranspositionSearch() {
+        transpositionTable.newSearch();
+    }
+
+    /**
+     * @return the counters of the usage of the transposition table, or null if they aren't counted
+     * @see #USE_TRANSPOSITION_TABLE_STATS
+     */
+    public TranspositionTableStats getTranspositionStats() {
+        return transpositionStats;
+    }
+
+    @Override
+    protected void printStats(AlphaBetaOutcome outcome) {
+        super.printStats(outcome);
+        if( transpositionStats != null )
+            Debug.println(transpositionStats.toSummaryLine(transpositionTable));
+        if( ponderer != null )
+            Debug.println("Ponder hits: " + ponderHits + " misses: " + ponderMisses);
+    }
+
+    /**
+     * Search the best next move in the opening book if the current position is there, otherwise through {@link IterativeDeepeningSearchMoveStrategy#search()}
+     * @return the next best move for a player using this strategy
+     */
+    @Override
+    public MNKCell search() {
+        AlphaBetaOutcome bookOutcome = searchOpeningBook();
+        if( bookOutcome != null ) {
+            lastResult = bookOutcome;
+            endTime = System.currentTimeMillis();
+            return lastResult.move;
+        }
+        if( helpers == null )
+            return super.search();
+
+        // the helpers search the same position, from the same marked cells
+        MNKCell[] FC = currentBoard.getFreeCells(), MC = currentBoard.getMarkedCells();
+        Future<?>[] helpersResults = new Future<?>[helpers.length];
+        for (int h = 0; h < helpers.length; h++) {
+            LazySMPHelperSearchMoveStrategy helper = helpers[h];
+            helpersResults[h] = helpersExecutor.submit(() -> helper.searchHelper(FC, MC));
+        }
+
+        try {
+            super.search();
+        }
+        finally {
+            // the helpers must not use the shared table after this search
+            for (LazySMPHelperSearchMoveStrategy helper : helpers)
+                helper.stop();
+            for (Future<?> result : helpersResults) {
+                try {
+                    result.get();
+                }
+                catch (InterruptedException | ExecutionException e) {
+                    if( DEBUG_SHOW_INFO )
+                        Debug.println(Utils.ConsoleColors.RED + "Lazy SMP helper failed: " + e + Utils.ConsoleColors.RESET);
+                }
+            }
+        }
+
+        // pick the result of the deepest completed search, unless this one is a proven win, as the helpers don't search them
+        if( round > 0 && !isForcedWinFound ) {
+            for (LazySMPHelperSearchMoveStrategy helper : helpers) {
+                AlphaBetaOutcome helperResult = helper.lastResult;
+                if( helperResult != null && helperResult.move != null && helper.lastCompletedDepth > lastCompletedDepth
+                    && currentBoard.cellState(helperResult.move.i, helperResult.move.j) == MNKCellState.FREE ) {
+                    lastCompletedDepth = helper.lastCompletedDepth;
+                    lastResult = new AlphaBetaOutcome(helperResult);
+                    lastResult.move = cellsByIndex[ matrixMap.getArrayIndexFromMatrixIndexes(helperResult.move.i, helperResult.move.j) ];
+                }
+            }
+        }
+        return lastResult.move;
+    }
+
+    /**
+     * @return the outcome with the book move of current position, or null if there isn't
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O( M*N + log(E) )</code> where E is the count of book entries</li>
+     *      <li>Space: <code>O(M*N)</code></li>
+     * </ul>
+     */
+    protected AlphaBetaOutcome searchOpeningBook() {
+        if( openingBook == null )
+            return null;
+
+        MNKCell move = openingBook.lookup(currentBoard.getMarkedCells());
+        if( move == null || currentBoard.cellState(move.i, move.j) != MNKCellState.FREE )
+            return null;
+
+        if( DEBUG_SHOW_INFO )
+            Debug.println( "Move found in opening book: " + move );
+        AlphaBetaOutcome outcome = new AlphaBetaOutcome();
+        outcome.move = cellsByIndex[ matrixMap.getArrayIndexFromMatrixIndexes(move.i, move.j) ];
+        outcome.depth = 0; outcome.eval = 0;
+        return outcome;
     }
 
     @Override
     public void postSearch() {
         super.postSearch();
 
-        // The flushing may require some time, so it will be done on next round if we just have been out of time
-        if( isStateValid() ) {
-            flushTranspositionTable();
+        // no more searches will be done on this game
+        if( currentBoard.gameState() != MNKGameState.OPEN )
+            release();
+        else if( ponderer != null )
+            startPondering();
+    }
+
+    /**
+     * Release the transposition table, the helpers and the ponderer
+     */
+    @Override
+    public void release() {
+        if( ponderer != null ) {
+            // it must not use the shared table after its release
+            cancelPondering();
+            pondererExecutor.shutdownNow();
+            ponderer.release();
+            ponderer = null;
+            pondererExecutor = null;
+        }
+        if( helpers != null ) {
+            helpersExecutor.shutdownNow();
+            for (LazySMPHelperSearchMoveStrategy helper : helpers)
+                helper.release();
+            helpers = null;
+            helpersExecutor = null;
         }
+        if( transpositionTable != null ) {
+            transpositionTable.free();
+            transpositionTable = null;
+        }
+        super.release();
     }
 
     @Override
@@ -143,53 +511,167 @@ public class TranspositionSearchMoveStrategy extends IterativeDeepeningSearchMov
     }
 
     @Override
-    protected AlphaBetaOutcome alphaBetaPruning(boolean shouldMaximize, int a, int b, int depth, int depthLeft, long endTime) {
+    protected long alphaBetaPruning(boolean shouldMaximize, int a, int b, int depth, int depthLeft, long endTime) {
         // int aOriginal = a, bOriginal = b;
 
-        BigInteger key = currentState.getCurrentState();
-        AlphaBetaOutcome outcome;
-        HashMap<BigInteger, TranspositionData> table = getTranspositionTable();
-        TranspositionData bestOutcome = table.get( key );
+        long score;
+        if( transpositionStats != null ) {
+            transpositionStats.setDepth(depth);
+            transpositionStats.count(TranspositionTableStats.PROBES);
+        }
+        int slot = transpositionTable.probe(currentState.getCanonicalKey(), currentState.getCanonicalVerificationKey());
+        if( slot >= 0 && transpositionStats != null )
+            transpositionStats.count(TranspositionTableStats.HITS);
+        if( USE_HASH_MOVE_FIRST ) {
+            // on a fail low, the stored move is just the last searched one
+            boolean isFailLow = slot >= 0 && transpositionTable.getType(slot) == (shouldMaximize
+                    ? TranspositionData.ValueType.UPPER_BOUND
+                    : TranspositionData.ValueType.LOWER_BOUND);
+            hashMoves[ getSimulatedRound() ] = isFailLow ? TranspositionTable.NO_MOVE : getHashMove(slot);
+        }
 
-        if (bestOutcome != null && depthLeft <= bestOutcome.depth && key.equals(bestOutcome.boardState) ) {
-            int score = bestOutcome.eval;
+        if ( slot >= 0 && depthLeft <= transpositionTable.getDepth(slot) ) {
+            score = loadTranspositionScore(slot);
+            int eval = AlphaBetaOutcome.getEval(score);
+            TranspositionData.ValueType type = transpositionTable.getType(slot);
 
-            switch (bestOutcome.type) {
+            switch (type) {
                 case EXACT:
                     // transposition has a deeper or equal search depth
                     // we can stop here as we already know the value
                     // returned by the evaluation function
-                    return new AlphaBetaOutcome(bestOutcome);
+                    if( transpositionStats != null )
+                        transpositionStats.count(TranspositionTableStats.EXACT_CUTOFFS);
+                    setTranspositionPrincipalVariation(slot, depth);
+                    return score;
                 case LOWER_BOUND:
-                    a = Math.max(a, score);
+                    a = Math.max(a, eval);
                     break;
                 case UPPER_BOUND:
-                    b = Math.min(b, score);
+                    b = Math.min(b, eval);
                     break;
             }
 
             if (b <= a) {
                 // cut-off
-                return new AlphaBetaOutcome(bestOutcome);
+                if( transpositionStats != null )
+                    transpositionStats.count(type == TranspositionData.ValueType.LOWER_BOUND
+                            ? TranspositionTableStats.LOWER_BOUND_CUTOFFS
+                            : TranspositionTableStats.UPPER_BOUND_CUTOFFS);
+                setTranspositionPrincipalVariation(slot, depth);
+                return score;
             }
         }
 
-        outcome = super.alphaBetaPruning(shouldMaximize, a, b, depth, depthLeft, endTime);
+        score = super.alphaBetaPruning(shouldMaximize, a, b, depth, depthLeft, endTime);
+
+        if( isEarlyExitStarted ) return score;
+
+        // the children searches moved the depth of the counters
+        if( transpositionStats != null )
+            transpositionStats.setDepth(depth);
 
-        if( isEarlyExitStarted ) return outcome;
+        storeTransposition(score, getPrincipalVariationMoveIndex(depth), depthLeft, a, b);
 
+        return score;
+    }
+
+    /**
+     * Store the score of the current state, with the bound type given by the window it has been searched with
+     * @param score the packed score of the current state
+     * @param moveIndex array coordinate of the best move of the current state, or {@link #NO_MOVE}
+     * @param depthLeft the depth searched from the current state
+     * @param a alpha of the search of the current state
+     * @param b beta of the search of the current state
+     */
+    protected void storeTransposition(long score, int moveIndex, int depthLeft, int a, int b) {
+        int eval = AlphaBetaOutcome.getEval(score);
         // minimize
-        if (outcome.eval <= a) {
-            table.put(key, new TranspositionData(outcome, depthLeft, TranspositionData.ValueType.UPPER_BOUND, key));
+        if (eval <= a) {
+            storeTransposition(score, moveIndex, depthLeft, TranspositionData.ValueType.UPPER_BOUND);
         }
         // maximize
-        else if (b <= outcome.eval) {
-            table.put(key, new TranspositionData(outcome, depthLeft, TranspositionData.ValueType.LOWER_BOUND, key));
+        else if (b <= eval) {
+            storeTransposition(score, moveIndex, depthLeft, TranspositionData.ValueType.LOWER_BOUND);
         }
         else {
-            table.put(key, new TranspositionData(outcome, depthLeft, TranspositionData.ValueType.EXACT, key));
+            storeTransposition(score, moveIndex, depthLeft, TranspositionData.ValueType.EXACT);
         }
+    }
 
+    /**
+     * Store the transposition of the root searched in parallel, as the root doesn't pass through {@link #alphaBetaPruning}
+     */
+    @Override
+    protected AlphaBetaOutcome rootSplitAlphaBetaPruning(int a, int b, int depthLeft, long endTime) {
+        AlphaBetaOutcome outcome = super.rootSplitAlphaBetaPruning(a, b, depthLeft, endTime);
+        if( outcome != null && !isRewinding() ) {
+            long score = AlphaBetaOutcome.pack(outcome.eval, outcome.depth, outcome.state);
+            storeTransposition(score, getPrincipalVariationMoveIndex(0), depthLeft, a, b);
+        }
+        return outcome;
+    }
+
+    /**
+     * Set the principal variation of the node at depth to the move stored at slot, if any, as the transposition doesn't store the rest of the line
+     * @param slot a slot returned by {@link TranspositionTable#probe}
+     * @param depth depth level of the node
+     */
+    protected void setTranspositionPrincipalVariation(int slot, int depth) {
+        int moveIndex = getHashMove(slot);
+        if( moveIndex != TranspositionTable.NO_MOVE )
+            setPrincipalVariation(depth, moveIndex);
+        else
+            clearPrincipalVariation(depth);
+    }
+
+    /**
+     * @param slot a slot returned by {@link TranspositionTable#probe}, or -1
+     * @return the array index of the move stored at slot, mapped to the current state, or {@link TranspositionTable#NO_MOVE}
+     */
+    protected int getHashMove(int slot) {
+        if( slot < 0 )
+            return TranspositionTable.NO_MOVE;
+        int moveIndex = transpositionTable.getMove(slot);
+        return moveIndex != TranspositionTable.NO_MOVE ? currentState.fromCanonicalCell(moveIndex) : TranspositionTable.NO_MOVE;
+    }
+
+    /**
+     * @return the hash move of the current node, if {@link #USE_HASH_MOVE_FIRST} and it's still free, null otherwise.
+     * The hash move is consumed, so it can't be provided to another node at the same ply that hasn't been looked up
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(1)</code></li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    @Override
+    protected MNKCell getFirstCandidate() {
+        if( !USE_HASH_MOVE_FIRST )
+            return null;
+        int ply = getSimulatedRound();
+        int moveIndex = hashMoves[ply];
+        hashMoves[ply] = TranspositionTable.NO_MOVE;
+        if( moveIndex == TranspositionTable.NO_MOVE )
+            return null;
+        MNKCell move = cellsByIndex[moveIndex];
+        return currentBoard.cellState(move.i, move.j) == MNKCellState.FREE ? move : null;
+    }
+
+    /**
+     * Search the root with the best move of the previous iteration first,
+     * or with the move stored by the previous rounds in the transposition of the root, if any
+     */
+    @Override
+    protected AlphaBetaOutcome searchRoot(boolean shouldMaximize, int a, int b, int maxDepth) {
+        if( USE_HASH_MOVE_FIRST ) {
+            hashMoves[ getSimulatedRound() ] = rootBestMove != null
+                    ? matrixMap.getArrayIndexFromMatrixIndexes(rootBestMove.i, rootBestMove.j)
+                    : getHashMove(transpositionTable.probe(currentState.getCanonicalKey(), currentState.getCanonicalVerificationKey()));
+        }
+        AlphaBetaOutcome outcome = super.searchRoot(shouldMaximize, a, b, maxDepth);
+        // an interrupted search has no valid outcome
+        if( !isRewinding() )
+            rootBestMove = outcome.move;
         return outcome;
     }
 
@@ -202,14 +684,6 @@ public class TranspositionSearchMoveStrategy extends IterativeDeepeningSearchMov
         }
 
         public ValueType type;
-        public BigInteger boardState;
         public int depth;
-
-        TranspositionData(AlphaBetaOutcome o, int depth, ValueType type, BigInteger boardState) {
-            super(o);
-            this.type = type;
-            this.boardState = boardState;
-            this.depth = depth;
-        }
     }
 }
@@ -0,0 +1,83 @@
+package player;
+
+import mnkgame.MNKGameState;
+import player.TranspositionSearchMoveStrategy.TranspositionData;
+
+/**
+ * Fixed capacity table of transpositions, identified by the zobrist keys of {@link ZobristHashableBoardState}.
+ * A transposition is addressed by the slot index returned by {@link #probe}, that is valid up to the next {@link #store}.
+ */
+public interface TranspositionTable {
+
+    int NO_MOVE = -1;
+
+    /**
+     * @return the count of slots of the table
+     */
+    int capacity();
+
+    /**
+     * Start a new search, so all transpositions currently stored become stale and their slots
+     * are replaced more easily on next stores, but they are still available to lookups until then.
+     */
+    void newSearch();
+
+    int getGeneration();
+
+    /**
+     * @return the count of slots that store a transposition, including the stale ones
+     */
+    long usedSlots();
+
+    /**
+     * Set the counters of the events of the table, like collisions and overwrites
+     * @param stats the counters, or null to disable counting
+     */
+    void setStats(TranspositionTableStats stats);
+
+    /**
+     * Search the slot that contains the transposition of the provided keys
+     * @param key zobrist key of the state
+     * @param verificationKey zobrist verification key of the state, ignored if verification isn't used
+     * @return the slot index of the transposition, or -1 if absent
+     */
+    int probe(long key, long verificationKey);
+
+    /**
+     * Store the transposition of the provided keys
+     * @param key zobrist key of the state
+     * @param verificationKey zobrist verification key of the state, ignored if verification isn't used
+     * @param eval evaluation of the outcome
+     * @param depthLeft the depth searched from the state
+     * @param type the kind of bound of eval
+     * @param state the game state of the outcome
+     * @param moveIndex the array coordinate of the best move, or {@link #NO_MOVE}
+     * @param outcomeDepth the depth of the outcome
+     */
+    void store(long key, long verificationKey, int eval, int depthLeft, TranspositionData.ValueType type, MNKGameState state, int moveIndex, int outcomeDepth);
+
+    int getEval(int slot);
+
+    int getDepth(int slot);
+
+    TranspositionData.ValueType getType(int slot);
+
+    MNKGameState getState(int slot);
+
+    /**
+     * @return the best move index of the transposition, or {@link #NO_MOVE} if it hasn't one
+     */
+    int getMove(int slot);
+
+    int getOutcomeDepth(int slot);
+
+    /**
+     * Remove all transpositions
+     */
+    void clear();
+
+    /**
+     * Release the memory of the table, that can't be used anymore
+     */
+    void free();
+}
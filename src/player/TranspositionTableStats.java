@@ -0,0 +1,165 @@
+package player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Counters of the usage of a {@link TranspositionTable}, bucketed by the depth of the search tree where the event happened,
+ * and by round. The counters of the current round are kept for each depth,
+ * while only the totals of the previous rounds are kept, see {@link #getRoundsTotals()}.
+ *
+ * The strategy counts the events it knows (probes, hits, cutoffs), after setting the current depth with {@link #setDepth(int)},
+ * while the table counts the events it knows (collisions, stores, overwrites) at that depth.
+ */
+public class TranspositionTableStats {
+
+    /**
+     * probes of the table
+     */
+    public static final int PROBES = 0;
+    /**
+     * probes that found a transposition of the state
+     */
+    public static final int HITS = 1;
+    /**
+     * hits with a deep enough exact value, that ended the search of the node
+     */
+    public static final int EXACT_CUTOFFS = 2;
+    /**
+     * hits with a deep enough lower bound, that caused a beta cutoff
+     */
+    public static final int LOWER_BOUND_CUTOFFS = 3;
+    /**
+     * hits with a deep enough upper bound, that caused an alpha cutoff
+     */
+    public static final int UPPER_BOUND_CUTOFFS = 4;
+    /**
+     * probes that found a transposition with the same key but a different verification key
+     */
+    public static final int COLLISIONS = 5;
+    /**
+     * stores in the table
+     */
+    public static final int STORES = 6;
+    /**
+     * stores that replaced the transposition of another state
+     */
+    public static final int OVERWRITES = 7;
+    public static final int COUNTERS_COUNT = 8;
+
+    protected static final String[] COUNTERS_NAMES = {
+            "probes", "hits", "exact cutoffs", "lower cutoffs", "upper cutoffs", "collisions", "stores", "overwrites"
+    };
+
+    // counters[counter][depth] of the current round
+    protected final long[][] counters;
+    protected final List<long[]> roundsTotals;
+    protected int depth;
+    protected int round;
+
+    /**
+     * @param maxDepth max depth of the search tree, i.e. the cells count of the board
+     */
+    public TranspositionTableStats(int maxDepth) {
+        counters = new long[COUNTERS_COUNT][maxDepth + 1];
+        roundsTotals = new ArrayList<>();
+        depth = 0;
+        round = 0;
+    }
+
+    /**
+     * Save the totals of the current round, and reset the counters for the next one
+     * @param round the index of the next round, i.e. the count of marked cells
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(D)</code> where D is the max depth</li>
+     * </ul>
+     */
+    public void newRound(int round) {
+        if( getRoundTotal(PROBES) > 0 || getRoundTotal(STORES) > 0 )
+            roundsTotals.add(getRoundTotals());
+        for (long[] counter : counters)
+            Arrays.fill(counter, 0L);
+        this.round = round;
+    }
+
+    public int getRound() {
+        return round;
+    }
+
+    /**
+     * Set the depth where next events happen
+     */
+    public void setDepth(int depth) {
+        this.depth = Math.min(depth, counters[0].length - 1);
+    }
+
+    /**
+     * Count an event at current depth
+     * @param counter one of the counters of this class, like {@link #PROBES}
+     */
+    public void count(int counter) {
+        counters[counter][depth]++;
+    }
+
+    /**
+     * @return the value of the counter at the depth, in the current round
+     */
+    public long getCount(int counter, int depth) {
+        return counters[counter][depth];
+    }
+
+    /**
+     * @return the value of the counter for all depths, in the current round
+     */
+    public long getRoundTotal(int counter) {
+        long total = 0;
+        for (long count : counters[counter])
+            total += count;
+        return total;
+    }
+
+    /**
+     * @return the values of all counters for all depths, in the current round
+     */
+    public long[] getRoundTotals() {
+        long[] totals = new long[COUNTERS_COUNT];
+        for (int counter = 0; counter < COUNTERS_COUNT; counter++)
+            totals[counter] = getRoundTotal(counter);
+        return totals;
+    }
+
+    /**
+     * @return the totals of the previous rounds that used the table, in order of round
+     */
+    public List<long[]> getRoundsTotals() {
+        return roundsTotals;
+    }
+
+    /**
+     * @param table the counted table
+     * @return the ratio of used slots of the table
+     */
+    public static float getFillRatio(TranspositionTable table) {
+        return table.usedSlots() / (float) table.capacity();
+    }
+
+    /**
+     * @param table the counted table
+     * @return a single line summary of the current round
+     */
+    public String toSummaryLine(TranspositionTable table) {
+        long[] totals = getRoundTotals();
+        StringBuilder builder = new StringBuilder("TT round " + round + ":");
+        for (int counter = 0; counter < COUNTERS_COUNT; counter++)
+            builder.append(' ').append(COUNTERS_NAMES[counter]).append('=').append(totals[counter]);
+        long cutoffs = totals[EXACT_CUTOFFS] + totals[LOWER_BOUND_CUTOFFS] + totals[UPPER_BOUND_CUTOFFS];
+        builder.append(String.format(" hit rate=%.1f%% cutoff rate=%.1f%%",
+                totals[PROBES] > 0 ? 100f * totals[HITS] / totals[PROBES] : 0f,
+                totals[PROBES] > 0 ? 100f * cutoffs / totals[PROBES] : 0f
+        ));
+        if( table != null )
+            builder.append(String.format(" fill=%.1f%%", 100f * getFillRatio(table)));
+        return builder.toString();
+    }
+}
@@ -269,9 +269,8 @@ public class Utils {
         }
 
         public int getArrayIndexFromMatrixIndexes(int i, int j) {
-            // return (i * M) + j;
-            // return matrixToArrayIndexMap[i][j];
-            return (i * M) + j;
+            // return (i * N) + j;
+            return matrixToArrayIndexMap[i][j];
         }
 
         public int[] getMatrixIndexesFromArrayIndex(int index) {
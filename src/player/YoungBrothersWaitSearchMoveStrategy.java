@@ -0,0 +1,324 @@
+package player;
+
+import mnkgame.MNKCell;
+import mnkgame.MNKGameState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class parallelizes {@link #alphaBetaPruning} with the Young Brothers Wait Concept:
+ * on the nodes shallower than {@link #PARALLEL_DEPTH}, the first (eldest) child is searched serially to establish the bounds,
+ * then the remaining siblings are searched in parallel as {@link RecursiveTask}s of a {@link ForkJoinPool}.
+ * <ul>
+ *     <li>The board and the threat detection logic can't be shared, so each task borrows a replica of this strategy from a pool,
+ *     and brings it to the node's state marking the node's path, reusing the common prefix with the replica's board.</li>
+ *     <li>The siblings share their node's bounds in a {@link SplitPoint}, so each sibling starts with the bounds improved by the ones already completed.</li>
+ *     <li>When a sibling causes a cutoff, the other siblings of the split point (and all their descendants split points) are cancelled:
+ *     their replicas rewind as on timeout, see {@link #isRewinding()}.</li>
+ * </ul>
+ * Deeper nodes are searched serially by the replica that reached them.
+ */
+public class YoungBrothersWaitSearchMoveStrategy extends IterativeDeepeningSearchMoveStrategy {
+
+    /**
+     * Nodes shallower than this depth split their younger brothers in parallel tasks
+     */
+    public int PARALLEL_DEPTH = 2;
+    /**
+     * Count of worker threads
+     */
+    public int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    // the strategy that owns the pool, or null if this is the owner
+    protected final YoungBrothersWaitSearchMoveStrategy owner;
+    protected ForkJoinPool pool;
+    protected ConcurrentLinkedDeque<YoungBrothersWaitSearchMoveStrategy> replicas;
+    // split point of the task that is using this replica
+    protected SplitPoint activeSplit;
+    // nodes searched by the replicas, shared with the owner
+    protected LongAdder replicasNodesCount;
+
+    public YoungBrothersWaitSearchMoveStrategy() {
+        super();
+        owner = null;
+    }
+
+    /**
+     * Create a replica of the owner strategy, that shares its pool
+     */
+    protected YoungBrothersWaitSearchMoveStrategy(YoungBrothersWaitSearchMoveStrategy owner) {
+        super();
+        this.owner = owner;
+        USE_SOLVED_POSITIONS = false;
+        USE_THREAT_SPACE_SEARCH = false;
+        ENDGAME_SOLVER_FREE_CELLS = 0;
+    }
+
+    @Override
+    public void init(int M, int N, int K, boolean first, int timeout_in_secs) {
+        super.init(M, N, K, first, timeout_in_secs);
+        if( owner == null ) {
+            pool = new ForkJoinPool(Math.max(1, PARALLELISM));
+            replicas = new ConcurrentLinkedDeque<>();
+            replicasNodesCount = new LongAdder();
+        }
+        else {
+            pool = owner.pool;
+            replicas = owner.replicas;
+            replicasNodesCount = owner.replicasNodesCount;
+            PARALLEL_DEPTH = owner.PARALLEL_DEPTH;
+            solvedPositions = owner.solvedPositions;
+        }
+    }
+
+    /**
+     * Shutdown the worker threads
+     */
+    @Override
+    public void release() {
+        if( owner == null && pool != null ) {
+            pool.shutdownNow();
+            replicas.clear();
+        }
+        pool = null;
+        replicas = null;
+        super.release();
+    }
+
+    /**
+     * @return a free replica, created if the pool hasn't one
+     */
+    protected YoungBrothersWaitSearchMoveStrategy borrowReplica() {
+        YoungBrothersWaitSearchMoveStrategy replica = replicas.pollFirst();
+        if( replica == null ) {
+            replica = new YoungBrothersWaitSearchMoveStrategy(owner != null ? owner : this);
+            replica.init(currentBoard.M, currentBoard.N, currentBoard.K, playerIndex == 0, (int) (timeout / 1000));
+        }
+        replica.isEarlyExitStarted = false;
+        return replica;
+    }
+
+    protected void returnReplica(YoungBrothersWaitSearchMoveStrategy replica) {
+        replica.activeSplit = null;
+        replicasNodesCount.add(replica.nodesCount);
+        replica.nodesCount = 0;
+        replicas.offerFirst(replica);
+    }
+
+    /**
+     * @return the nodes searched by this strategy, and by the replicas if this is the owner
+     */
+    @Override
+    protected long getNodesCount() {
+        return owner == null && replicasNodesCount != null ? nodesCount + replicasNodesCount.sum() : nodesCount;
+    }
+
+    /**
+     * Start the rewind of this strategy to the root, as on timeout
+     */
+    protected void startRewinding() {
+        if( !isEarlyExitStarted ) {
+            isEarlyExitStarted = true; startingExitTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Bring the board of this replica to the state reached by path, keeping the common prefix
+     * @param path the marked cells of the state, ordered by move
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O( M*N * T(u) )</code> on worst case, where T(u) is the cost of {@link #mark} and {@link #unMark}</li>
+     *      <li>Space: <code>O(M*N)</code></li>
+     * </ul>
+     */
+    protected void syncTo(MNKCell[] path) {
+        MNKCell[] marked = currentBoard.getMarkedCells();
+        int common = 0;
+        while (common < marked.length && common < path.length
+                && marked[common].i == path[common].i && marked[common].j == path[common].j) {
+            common++;
+        }
+        for (int count = marked.length; count > common; count--)
+            unMark();
+        for (int count = common; count < path.length; count++)
+            mark(path[count]);
+    }
+
+    /**
+     * @return true if the split point of the running task, or one of its ancestors, has been cancelled
+     */
+    protected boolean isCancelled() {
+        for (SplitPoint split = activeSplit; split != null; split = split.parent) {
+            if( split.isCancelled )
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected long alphaBetaPruning(boolean shouldMaximize, int a, int b, int depth, int depthLeft, long endTime) {
+        if( isCancelled() ) {
+            // rewind the task as on timeout
+            startRewinding();
+            return AlphaBetaOutcome.NO_SCORE;
+        }
+        if( depth >= PARALLEL_DEPTH || depthLeft <= 1 || pool == null || solvedPositions != null
+            || currentBoard.gameState() != MNKGameState.OPEN ) {
+            return super.alphaBetaPruning(shouldMaximize, a, b, depth, depthLeft, endTime);
+        }
+        return splitAlphaBetaPruning(shouldMaximize, a, b, depth, depthLeft, endTime);
+    }
+
+    /**
+     * Search serially the eldest child, then the younger brothers in parallel.
+     * The principal variation of a younger brother stays on the replica that searched it, so only its move is stored on the node's one
+     * @see #alphaBetaPruning
+     */
+    protected long splitAlphaBetaPruning(boolean shouldMaximize, int a, int b, int depth, int depthLeft, long endTime) {
+        clearPrincipalVariation(depth);
+        List<MNKCell> moves = new ArrayList<>();
+        for (MNKCell move : getMovesCandidates())
+            moves.add(move);
+
+        // eldest brother
+        MNKCell eldest = moves.get(0);
+        mark(eldest);
+        long bestScore = alphaBetaPruning(!shouldMaximize, a, b, depth + 1, depthLeft - 1, endTime);
+        unMark();
+        if( isRewinding() )
+            return AlphaBetaOutcome.NO_SCORE;
+        updatePrincipalVariation(depth, eldest.i * currentBoard.N + eldest.j);
+        if( shouldMaximize )
+            a = Math.max(a, AlphaBetaOutcome.getEval(bestScore));
+        else
+            b = Math.min(b, AlphaBetaOutcome.getEval(bestScore));
+        if( USE_FAST_REWIND && depth == 0 ) lastResult = new AlphaBetaOutcome(bestScore, eldest);
+        if( b <= a || moves.size() == 1 )
+            return bestScore;
+
+        // younger brothers
+        SplitPoint split = new SplitPoint(activeSplit, shouldMaximize, a, b);
+        MNKCell[] path = currentBoard.getMarkedCells();
+        List<SiblingTask> tasks = new ArrayList<>(moves.size() - 1);
+        for (int m = 1; m < moves.size(); m++)
+            tasks.add(new SiblingTask(split, path, moves.get(m), depth, depthLeft, endTime));
+
+        if( ForkJoinTask.inForkJoinPool() )
+            ForkJoinTask.invokeAll(tasks);
+        else
+            pool.invoke(new RecursiveTask<Void>() {
+                @Override
+                protected Void compute() {
+                    ForkJoinTask.invokeAll(tasks);
+                    return null;
+                }
+            });
+
+        if( split.isOutOfTime || isCancelled() ) {
+            // a sibling ran out of time, or the task of this node has been cancelled, so this node rewinds too
+            startRewinding();
+            return AlphaBetaOutcome.NO_SCORE;
+        }
+        for (SiblingTask task : tasks) {
+            // cancelled by a cutoff
+            if( task.score == AlphaBetaOutcome.NO_SCORE )
+                continue;
+            long previousBestScore = bestScore;
+            bestScore = shouldMaximize ? max(bestScore, task.score) : min(bestScore, task.score);
+            if( bestScore != previousBestScore )
+                setPrincipalVariation(depth, task.move.i * currentBoard.N + task.move.j);
+        }
+        if( USE_FAST_REWIND && depth == 0 ) lastResult = new AlphaBetaOutcome(bestScore, getPrincipalVariationMove(depth));
+        return bestScore;
+    }
+
+    /**
+     * Bounds shared by the younger brothers of a node
+     */
+    protected static class SplitPoint {
+        protected final SplitPoint parent;
+        protected final boolean shouldMaximize;
+        protected final AtomicInteger alpha;
+        protected final AtomicInteger beta;
+        protected volatile boolean isCancelled;
+        // true if a sibling ran out of time
+        protected volatile boolean isOutOfTime;
+
+        protected SplitPoint(SplitPoint parent, boolean shouldMaximize, int alpha, int beta) {
+            this.parent = parent;
+            this.shouldMaximize = shouldMaximize;
+            this.alpha = new AtomicInteger(alpha);
+            this.beta = new AtomicInteger(beta);
+            this.isCancelled = false;
+            this.isOutOfTime = false;
+        }
+
+        /**
+         * Update the bounds with the eval of a completed sibling, and cancel the other siblings on cutoff
+         */
+        protected void update(int eval) {
+            if( shouldMaximize )
+                alpha.accumulateAndGet(eval, Math::max);
+            else
+                beta.accumulateAndGet(eval, Math::min);
+            if( beta.get() <= alpha.get() )
+                isCancelled = true;
+        }
+    }
+
+    /**
+     * Search of a younger brother on a replica
+     */
+    @SuppressWarnings("serial")
+    protected class SiblingTask extends RecursiveAction {
+        // packed score of the search, or AlphaBetaOutcome.NO_SCORE if cancelled or out of time
+        protected long score = AlphaBetaOutcome.NO_SCORE;
+        protected final SplitPoint split;
+        protected final MNKCell[] path;
+        protected final MNKCell move;
+        protected final int depth;
+        protected final int depthLeft;
+        protected final long endTime;
+
+        protected SiblingTask(SplitPoint split, MNKCell[] path, MNKCell move, int depth, int depthLeft, long endTime) {
+            this.split = split;
+            this.path = path;
+            this.move = move;
+            this.depth = depth;
+            this.depthLeft = depthLeft;
+            this.endTime = endTime;
+        }
+
+        @Override
+        protected void compute() {
+            if( split.isCancelled )
+                return;
+
+            YoungBrothersWaitSearchMoveStrategy replica = borrowReplica();
+            try {
+                replica.activeSplit = split;
+                replica.syncTo(path);
+                replica.mark(move);
+                long score = replica.alphaBetaPruning(!split.shouldMaximize, split.alpha.get(), split.beta.get(), depth + 1, depthLeft - 1, endTime);
+                replica.unMark();
+                if( !replica.isRewinding() ) {
+                    split.update(AlphaBetaOutcome.getEval(score));
+                    this.score = score;
+                }
+                else if( !replica.isCancelled() ) {
+                    split.isOutOfTime = true;
+                }
+            }
+            finally {
+                returnReplica(replica);
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package player;
+
+import java.util.Random;
+
+/**
+ * Board state hashed with the Zobrist technique.
+ * A random 64 bit key is assigned to each (player, cell) pair, and the key of a board state is
+ * the xor of the keys of all marked cells, so both a mark and an unmark are the same O(1) xor update.
+ *
+ * The key isn't a unique representation of the board,
+ * so two different states may share the same key.
+ * To detect these collisions a second and independent 64 bit key can be tracked as verification key:
+ * a collision is missed only if both keys collide at the same time.
+ *
+ * Optionally the keys of all the symmetric images of the board are tracked too:
+ * 4 symmetries (identity, horizontal and vertical reflections, 180° rotation) on rectangular boards,
+ * and 4 more (diagonal reflections, 90° and 270° rotations) on square boards.
+ * The canonical key is the minimum among them, so all symmetric states share the same canonical key,
+ * and the cells of a state are mapped to the cells of its canonical state through {@link #toCanonicalCell(int)}
+ * and back through {@link #fromCanonicalCell(int)}.
+ */
+public class ZobristHashableBoardState {
+
+    /**
+     * Seed used by default, so different instances with same sizes generate the same keys
+     */
+    public static final long DEFAULT_SEED = 0x4D4E4B47414D45L;
+    public static final int IDENTITY = 0;
+
+    // keys[ playerIndex ][ cellIndex ]
+    protected final long[][] keys;
+    protected final long[][] verificationKeys;
+
+    // symmetries[ symmetryIndex ][ cellIndex ] = cell index of the symmetric image
+    protected final int[][] symmetries;
+    protected final int[][] inverseSymmetries;
+
+    // states[ symmetryIndex ]
+    protected final long[] states;
+    protected final long[] verificationStates;
+    protected int canonicalSymmetry;
+
+    /**
+     * Track only the state of the board as is
+     * @param cellsCount count of cells of the board ( M * N )
+     * @param useVerificationKey if true then tracks also a second independent key, see {@link #getVerificationKey()}
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(M*N)</code></li>
+     *      <li>Space: <code>O(M*N)</code></li>
+     * </ul>
+     */
+    public ZobristHashableBoardState(int cellsCount, boolean useVerificationKey) {
+        this(cellsCount, useVerificationKey, DEFAULT_SEED);
+    }
+
+    public ZobristHashableBoardState(int cellsCount, boolean useVerificationKey, long seed) {
+        this(new int[][]{ identity(cellsCount) }, useVerificationKey, seed);
+    }
+
+    /**
+     * @param M Board rows
+     * @param N Board columns
+     * @param useVerificationKey if true then tracks also a second independent key, see {@link #getVerificationKey()}
+     * @param useSymmetries if true then tracks also the keys of the symmetric images of the board, see {@link #getCanonicalKey()}
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(S*M*N)</code> where S is the count of symmetries, 8 on square boards, 4 otherwise</li>
+     *      <li>Space: <code>O(S*M*N)</code></li>
+     * </ul>
+     */
+    public ZobristHashableBoardState(int M, int N, boolean useVerificationKey, boolean useSymmetries) {
+        this(useSymmetries ? initSymmetries(M, N) : new int[][]{ identity(M * N) }, useVerificationKey, DEFAULT_SEED);
+    }
+
+    protected ZobristHashableBoardState(int[][] symmetries, boolean useVerificationKey, long seed) {
+        int cellsCount = symmetries[IDENTITY].length;
+        Random random = new Random(seed);
+        keys = initKeys(random, cellsCount);
+        verificationKeys = useVerificationKey ? initKeys(random, cellsCount) : null;
+
+        this.symmetries = symmetries;
+        inverseSymmetries = new int[symmetries.length][cellsCount];
+        for (int s = 0; s < symmetries.length; s++) {
+            for (int cell = 0; cell < cellsCount; cell++) {
+                inverseSymmetries[s][ symmetries[s][cell] ] = cell;
+            }
+        }
+
+        states = new long[symmetries.length];
+        verificationStates = new long[symmetries.length];
+        canonicalSymmetry = IDENTITY;
+    }
+
+    private static long[][] initKeys(Random random, int cellsCount) {
+        long[][] keys = new long[2][cellsCount];
+        for (int p = 0; p < 2; p++) {
+            for (int i = 0; i < cellsCount; i++) {
+                keys[p][i] = random.nextLong();
+            }
+        }
+        return keys;
+    }
+
+    private static int[] identity(int cellsCount) {
+        int[] map = new int[cellsCount];
+        for (int i = 0; i < cellsCount; i++) map[i] = i;
+        return map;
+    }
+
+    private static int[][] initSymmetries(int M, int N) {
+        int[][] symmetries = new int[M == N ? 8 : 4][M * N];
+        for (int i = 0; i < M; i++) {
+            for (int j = 0; j < N; j++) {
+                int cell = i * N + j;
+                symmetries[0][cell] = cell;                                 // identity
+                symmetries[1][cell] = i * N + (N - 1 - j);                  // vertical axis reflection
+                symmetries[2][cell] = (M - 1 - i) * N + j;                  // horizontal axis reflection
+                symmetries[3][cell] = (M - 1 - i) * N + (N - 1 - j);        // 180° rotation
+                if( M == N ) {
+                    symmetries[4][cell] = j * N + i;                        // main diagonal reflection
+                    symmetries[5][cell] = (N - 1 - j) * N + (M - 1 - i);    // anti diagonal reflection
+                    symmetries[6][cell] = j * N + (M - 1 - i);              // 90° rotation
+                    symmetries[7][cell] = (N - 1 - j) * N + i;              // 270° rotation
+                }
+            }
+        }
+        return symmetries;
+    }
+
+    public long getKey() {
+        return states[IDENTITY];
+    }
+
+    /**
+     * @return the verification key of current state, or 0 if verification key isn't used
+     */
+    public long getVerificationKey() {
+        return verificationStates[IDENTITY];
+    }
+
+    public boolean hasVerificationKey() {
+        return verificationKeys != null;
+    }
+
+    public int getSymmetriesCount() {
+        return symmetries.length;
+    }
+
+    /**
+     * @return the index of the symmetry that maps current state to its canonical state
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(S)</code> on first call after a {@link #toggle}, <code>O(1)</code> otherwise</li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    public int getCanonicalSymmetry() {
+        if( canonicalSymmetry < 0 ) {
+            int min = IDENTITY;
+            for (int s = 1; s < states.length; s++) {
+                int cmp = Long.compare(states[s], states[min]);
+                if( cmp < 0 || (cmp == 0 && verificationStates[s] < verificationStates[min]) )
+                    min = s;
+            }
+            canonicalSymmetry = min;
+        }
+        return canonicalSymmetry;
+    }
+
+    /**
+     * @return the minimum key among the keys of all the symmetric images of current state
+     */
+    public long getCanonicalKey() {
+        return states[getCanonicalSymmetry()];
+    }
+
+    /**
+     * @return the verification key of the same symmetric image of {@link #getCanonicalKey()}, or 0 if verification key isn't used
+     */
+    public long getCanonicalVerificationKey() {
+        return verificationStates[getCanonicalSymmetry()];
+    }
+
+    /**
+     * @param cellIndex array coordinate of a cell of current state
+     * @return the array coordinate of same cell in the canonical state
+     */
+    public int toCanonicalCell(int cellIndex) {
+        return symmetries[getCanonicalSymmetry()][cellIndex];
+    }
+
+    /**
+     * @param canonicalCellIndex array coordinate of a cell of the canonical state
+     * @return the array coordinate of same cell in current state
+     */
+    public int fromCanonicalCell(int canonicalCellIndex) {
+        return inverseSymmetries[getCanonicalSymmetry()][canonicalCellIndex];
+    }
+
+    /**
+     * Mark / unmark the cell for the player
+     * @param playerIndex index of the player who marks / unmarks the cell
+     * @param cellIndex array coordinate of the cell in the matrix
+     * @implNote Cost <ul>
+     *      <li>Time: <code>O(S) = O(1)</code> where S is the count of tracked symmetries</li>
+     *      <li>Space: <code>O(1)</code></li>
+     * </ul>
+     */
+    public void toggle(int playerIndex, int cellIndex) {
+        for (int s = 0; s < symmetries.length; s++) {
+            int symmetricCell = symmetries[s][cellIndex];
+            states[s] ^= keys[playerIndex][symmetricCell];
+            if( verificationKeys != null )
+                verificationStates[s] ^= verificationKeys[playerIndex][symmetricCell];
+        }
+        canonicalSymmetry = -1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ZobristHashableBoardState)) return false;
+        ZobristHashableBoardState that = (ZobristHashableBoardState) o;
+        return getKey() == that.getKey() && getVerificationKey() == that.getVerificationKey();
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(getKey());
+    }
+}
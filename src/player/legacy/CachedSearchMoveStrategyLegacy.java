@@ -2,24 +2,24 @@ package player.legacy;
 
 import mnkgame.MNKCell;
 import player.AlphaBetaOutcome;
-import player.HashableBoardState;
 import player.Utils;
+import player.ZobristHashableBoardState;
 
-import java.math.BigInteger;
 import java.util.HashMap;
 
 public class CachedSearchMoveStrategyLegacy extends IterativeDeepeningSearchMoveStrategyLegacy {
 
-    protected HashableBoardState currentState;
+    protected ZobristHashableBoardState currentState;
     protected Utils.MatrixRowMap matrixMap;
-    private HashMap<BigInteger, CachedResult> cachedResults;
+    private HashMap<Long, CachedResult> cachedResults;
+    public boolean USE_HASH_VERIFICATION_KEY = true;
 
     @Override
     public void init(int M, int N, int K, boolean first, int timeout_in_secs) {
         super.init(M, N, K, first, timeout_in_secs);
         final int TABLE_SIZE = (int) Math.ceil((M * N * K) / 0.75);
         cachedResults = new HashMap<>(TABLE_SIZE);
-        currentState = new HashableBoardState();
+        currentState = new ZobristHashableBoardState(M * N, USE_HASH_VERIFICATION_KEY);
         matrixMap = new Utils.MatrixRowMap(M, N);
     }
 
@@ -59,15 +59,16 @@ public class CachedSearchMoveStrategyLegacy extends IterativeDeepeningSearchMove
     }
 
     @Override
-    protected AlphaBetaOutcome alphaBetaPruning(boolean shouldMaximize, int alpha, int beta, int depth, int depthLeft, long endTime) {
+    protected long alphaBetaPruning(boolean shouldMaximize, int alpha, int beta, int depth, int depthLeft, long endTime) {
         int a = alpha;
         int b = beta;
-        BigInteger key = currentState.getCurrentState();
+        long key = currentState.getKey();
+        long verificationKey = currentState.getVerificationKey();
         AlphaBetaOutcome outcome;
 
         CachedResult bestOutcome = this.cachedResults.get(key);
         int score;
-        if (bestOutcome != null && depthLeft <= bestOutcome.depth && key.equals(bestOutcome.boardState)) {
+        if (bestOutcome != null && depthLeft <= bestOutcome.depth && verificationKey == bestOutcome.verificationKey) {
             score = bestOutcome.eval;
 
             switch (bestOutcome.type) {
@@ -75,7 +76,7 @@ public class CachedSearchMoveStrategyLegacy extends IterativeDeepeningSearchMove
                     // transposition has a deeper or equal search depth
                     // we can stop here as we already know the value
                     // returned by the evaluation function
-                    return new AlphaBetaOutcome(bestOutcome);
+                    return loadCachedResult(bestOutcome, depth);
                 case LOWER_BOUND:
                     a = Math.max(a, score);
                     break;
@@ -86,27 +87,42 @@ public class CachedSearchMoveStrategyLegacy extends IterativeDeepeningSearchMove
 
             if (b <= a) {
                 // cut-off
-                return new AlphaBetaOutcome(bestOutcome);
+                return loadCachedResult(bestOutcome, depth);
             }
         }
 
-        outcome = super.alphaBetaPruning(shouldMaximize, a, b, depth, depthLeft, endTime);
+        long searchScore = super.alphaBetaPruning(shouldMaximize, a, b, depth, depthLeft, endTime);
+        if( isRewinding() )
+            return searchScore;
+        outcome = new AlphaBetaOutcome(searchScore, getPrincipalVariationMove(depth));
 
         // if( true ) {
         // minimize
         if (outcome.eval <= a) {
-            cachedResults.put(key, new CachedResult(outcome, depthLeft, CachedResult.ValueType.UPPER_BOUND, key));
+            cachedResults.put(key, new CachedResult(outcome, depthLeft, CachedResult.ValueType.UPPER_BOUND, verificationKey));
         }
         // maximize
         else if (outcome.eval >= b) {
-            cachedResults.put(key, new CachedResult(outcome, depthLeft, CachedResult.ValueType.LOWER_BOUND, key));
+            cachedResults.put(key, new CachedResult(outcome, depthLeft, CachedResult.ValueType.LOWER_BOUND, verificationKey));
         }
         else {
-            cachedResults.put(key, new CachedResult(outcome, depthLeft, CachedResult.ValueType.EXACT, key));
+            cachedResults.put(key, new CachedResult(outcome, depthLeft, CachedResult.ValueType.EXACT, verificationKey));
         }
         // }
 
-        return outcome;
+        return outcome.toScore();
+    }
+
+    /**
+     * Set the move of a cached result as the principal variation of the ply
+     * @return the packed score of the cached result
+     */
+    protected long loadCachedResult(CachedResult result, int depth) {
+        if( result.move != null )
+            setPrincipalVariation(depth, result.move.i * currentBoard.N + result.move.j);
+        else
+            clearPrincipalVariation(depth);
+        return result.toScore();
     }
 
     public static class CachedResult extends AlphaBetaOutcome {
@@ -118,13 +134,13 @@ public class CachedSearchMoveStrategyLegacy extends IterativeDeepeningSearchMove
         }
 
         public ValueType type;
-        public BigInteger boardState;
+        public long verificationKey;
         public int depth;
 
-        CachedResult(AlphaBetaOutcome o, int depth, ValueType type, BigInteger boardState) {
+        CachedResult(AlphaBetaOutcome o, int depth, ValueType type, long verificationKey) {
             super(o);
             this.type = type;
-            this.boardState = boardState;
+            this.verificationKey = verificationKey;
             this.depth = depth;
         }
     }
@@ -80,30 +80,28 @@ public class IterativeDeepeningSearchMoveStrategyLegacy extends ThreatSearchMove
 
             partialStartTime = System.currentTimeMillis();
 
-            try {
-                if( DEBUG_SHOW_INFO ) {
-                    Debug.println("Start searching up to depth " + maxDepth);
-                }
-                outcome = alphaBetaPruning(
-                        shouldMaximize,
-                        a,
-                        b,
-                        0,
-                        maxDepth,
-                        expectedEndTime
-                );
+            if( DEBUG_SHOW_INFO ) {
+                Debug.println("Start searching up to depth " + maxDepth);
+            }
+            long score = alphaBetaPruning(
+                    shouldMaximize,
+                    a,
+                    b,
+                    0,
+                    maxDepth,
+                    expectedEndTime
+            );
+            if( isRewinding() ) {
+                isOutOfTime = true;
+            }
+            else {
+                outcome = new AlphaBetaOutcome(score, getPrincipalVariationMove(0));
                 if( DEBUG_SHOW_DECISION_INFO ){
                     Debug.println(Utils.ConsoleColors.CYAN +
                             "Search up to depth " + maxDepth + " end with choice :" + outcome
                             + Utils.ConsoleColors.RESET
                     );
                 }
-
-            }
-            catch (EarlyExitException e) {
-                // set in invalid state, because if running out time, internal data structure are in in invalid state
-                invalidateState();
-                isOutOfTime = true;
             }
 
             partialEndTime = System.currentTimeMillis();
@@ -307,7 +307,7 @@ public class ThreatSearchMoveStrategyLegacy extends AlphaBetaPruningSearchMoveSt
             return outcome;
         }
         else {
-            return alphaBetaPruning(
+            long score = alphaBetaPruning(
                     true,
                     STANDARD_SCORES.get(STATE_LOSE),
                     STANDARD_SCORES.get(STATE_WIN),
@@ -315,6 +315,7 @@ public class ThreatSearchMoveStrategyLegacy extends AlphaBetaPruningSearchMoveSt
                     maxDepthSearch,
                     endTime
             );
+            return new AlphaBetaOutcome(score, getPrincipalVariationMove(0));
         }
     }
 
@@ -413,9 +414,8 @@ public class ThreatSearchMoveStrategyLegacy extends AlphaBetaPruningSearchMoveSt
     }
 
     @Override
-    protected AlphaBetaOutcome evaluate(int depth, boolean isMyTurn) {
+    protected long evaluate(int depth, boolean isMyTurn) {
         MNKGameState gameState = currentBoard.gameState();
-        AlphaBetaOutcome outcome = new AlphaBetaOutcome();
 
         int score = STANDARD_SCORES.get(gameState);
 
@@ -500,10 +500,7 @@ public class ThreatSearchMoveStrategyLegacy extends AlphaBetaPruningSearchMoveSt
         else if( score <= -depth)
             score += depth-1;
 
-        outcome.eval = score;
-        outcome.depth = depth;
-        outcome.state = gameState;
-        return outcome;
+        return AlphaBetaOutcome.pack(score, depth, gameState);
     }
 
     /**